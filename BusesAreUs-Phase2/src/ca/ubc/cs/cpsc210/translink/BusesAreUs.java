@@ -10,32 +10,61 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.TextView;
 import android.widget.Toast;
+import ca.ubc.cs.cpsc210.translink.loader.ArrivalsBatchLoader;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
 import ca.ubc.cs.cpsc210.translink.model.StopManager;
 import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
 import ca.ubc.cs.cpsc210.translink.parsers.ArrivalsParser;
 import ca.ubc.cs.cpsc210.translink.parsers.BusParser;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.ArrivalsDataMissingException;
+import ca.ubc.cs.cpsc210.translink.providers.CachingDataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.HttpArrivalDataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.HttpBusLocationDataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.HttpConnectionPool;
+import ca.ubc.cs.cpsc210.translink.providers.ResponseCache;
 import ca.ubc.cs.cpsc210.translink.ui.LocationListener;
 import ca.ubc.cs.cpsc210.translink.ui.MapDisplayFragment;
 import ca.ubc.cs.cpsc210.translink.ui.StopSelectionListener;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
 import org.json.JSONException;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Main activity
  */
 public class BusesAreUs extends Activity implements LocationListener, StopSelectionListener {
     private static final String TSA_TAG = "TSA_TAG";
     private static final String MAP_TAG = "Map Fragment Tag";
+    private static final long ARRIVALS_TIME_TO_LIVE = 30000;      // ms
+    private static final int MAX_CACHED_ARRIVALS = 32;            // stops
+    private static final long MAX_CACHED_ARRIVALS_BYTES = 512 * 1024;
+    private static final int NEARBY_STOPS = 8;                    // stops whose arrivals are fetched ahead
+    private static final double NEARBY_RADIUS = 500;              // metres
+    private static final int MAX_PARALLEL_ARRIVALS = 4;           // downloads
+    private static final long DOWNLOADER_IDLE_TIMEOUT = 30;       // s
+    /**
+     * arrival estimates recently downloaded, kept for as long as the application runs
+     */
+    private static final ResponseCache arrivalsCache =
+            new ResponseCache(ARRIVALS_TIME_TO_LIVE, MAX_CACHED_ARRIVALS, MAX_CACHED_ARRIVALS_BYTES);
+    /**
+     * threads on which arrivals at nearby stops are downloaded, kept for as long as the application runs
+     * and ended when idle
+     */
+    private static final ThreadPoolExecutor arrivalsDownloader = newArrivalsDownloader();
+    private ArrivalsBatchLoader nearbyArrivalsLoader;
     private MapDisplayFragment fragment;
     private TextView nearestStopLabel;
     private Stop myNearestStop;
@@ -44,11 +73,21 @@ public class BusesAreUs extends Activity implements LocationListener, StopSelect
     @Override
     public void onCreate(Bundle savedInstanceState) {
         context = getApplicationContext();
+        // the pool is shared by the process, so this only takes effect for the first activity created
+        HttpConnectionPool.configure(HttpConnectionPool.DEFAULT_MAX_IDLE_CONNECTIONS,
+                HttpConnectionPool.DEFAULT_IDLE_TIMEOUT);
         super.onCreate(savedInstanceState);
         Log.i(TSA_TAG, "onCreate");
 
         setContentView(R.layout.map_layout);
         myNearestStop = null;
+        final Handler handler = new Handler(Looper.getMainLooper());
+        nearbyArrivalsLoader = new ArrivalsBatchLoader(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        }, arrivalsDownloader, arrivalsCache);
 
         initializeFragment(savedInstanceState);
 
@@ -110,6 +149,9 @@ public class BusesAreUs extends Activity implements LocationListener, StopSelect
      */
     @Override
     public void onLocationChanged(Stop nearest, LatLon locn) {
+        if (nearest != null && !nearest.equals(myNearestStop) && locn != null) {
+            loadNearbyArrivals(locn);
+        }
         if (nearest != null) {
             myNearestStop = nearest;
         } else {
@@ -118,6 +160,43 @@ public class BusesAreUs extends Activity implements LocationListener, StopSelect
         onResume();
     }
 
+    /**
+     * Fetch the arrivals at the stops near the user into the arrivals cache, so that the arrivals at any of
+     * them are shown without waiting for a download
+     *
+     * @param locn the user's location
+     */
+    private void loadNearbyArrivals(LatLon locn) {
+        ConnectivityManager connMgr = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return;
+        }
+        nearbyArrivalsLoader.load(StopManager.getInstance().findKNearest(locn, NEARBY_STOPS, NEARBY_RADIUS),
+                new ArrivalsBatchLoader.Listener() {
+                    @Override
+                    public void onArrivalsLoaded(Stop stop) {
+                        Log.d(TSA_TAG, "Fetched arrivals at nearby stop " + stop.getNumber());
+                    }
+
+                    @Override
+                    public void onArrivalsFailed(Stop stop, Exception cause) {
+                        Log.d(TSA_TAG, "No arrivals at nearby stop " + stop.getNumber(), cause);
+                    }
+
+                    @Override
+                    public void onBatchFinished() {
+                        Log.d(TSA_TAG, "Fetched arrivals at nearby stops");
+                    }
+                });
+    }
+
+    @Override
+    protected void onDestroy() {
+        nearbyArrivalsLoader.cancel();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
@@ -181,6 +260,13 @@ public class BusesAreUs extends Activity implements LocationListener, StopSelect
         return context;
     }
 
+    private static ThreadPoolExecutor newArrivalsDownloader() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PARALLEL_ARRIVALS, MAX_PARALLEL_ARRIVALS,
+                DOWNLOADER_IDLE_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Download arrivals data for stop selected by user;
      *
@@ -226,7 +312,8 @@ public class BusesAreUs extends Activity implements LocationListener, StopSelect
         @Override
         protected String doInBackground(Stop... stops) {
             stop = stops[0];
-            DataProvider dataProvider = new HttpArrivalDataProvider(stop);
+            DataProvider dataProvider = new CachingDataProvider(stop.getNumber(),
+                    new HttpArrivalDataProvider(stop), arrivalsCache);
             String response = null;
 
             try {
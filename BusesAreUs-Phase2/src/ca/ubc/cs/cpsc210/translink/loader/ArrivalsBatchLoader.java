@@ -0,0 +1,217 @@
+package ca.ubc.cs.cpsc210.translink.loader;
+
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.parsers.ArrivalsParser;
+import ca.ubc.cs.cpsc210.translink.providers.CachingDataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.HttpArrivalDataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.ResponseCache;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Loads arrivals for a batch of stops, downloading the estimates on the threads of an executor owned by the
+ * caller, so the number of stops downloaded at a time is bounded by its number of threads and the threads
+ * are reused from one batch to the next.  Each stop's estimates are parsed into the stop and reported to the listener
+ * as soon as they have downloaded, so results arrive in the order downloads complete rather than all at
+ * the end.  Parsing and listener methods run through the publisher given to the constructor (typically one
+ * that posts to the main thread), as the AsyncTask downloads in BusesAreUs parse on the main thread.
+ * Downloads go through the response cache given to the constructor, so a stop whose arrivals were loaded
+ * recently, by this loader or by anything else sharing the cache, is not downloaded again.
+ */
+public class ArrivalsBatchLoader {
+    private final Executor publisher;
+    private final Executor downloader;
+    private final ResponseCache cache;
+    private Batch current;
+
+    /**
+     * Listener for the progress of an ArrivalsBatchLoader
+     */
+    public interface Listener {
+
+        /**
+         * Called when the arrivals at a stop have been loaded; the stop's previous arrivals have been
+         * replaced by those just loaded
+         *
+         * @param stop the stop
+         */
+        void onArrivalsLoaded(Stop stop);
+
+        /**
+         * Called when the arrivals at a stop could not be downloaded or parsed
+         *
+         * @param stop  the stop
+         * @param cause the exception thrown while downloading or parsing
+         */
+        void onArrivalsFailed(Stop stop, Exception cause);
+
+        /**
+         * Called once after the arrivals at every stop in the batch have loaded or failed
+         */
+        void onBatchFinished();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param publisher  executor, running one task at a time, through which arrivals are parsed and listener
+     *                   methods are called
+     * @param downloader executor on whose threads arrivals are downloaded; it is never shut down by this
+     *                   loader, so it can be shared with other loaders for as long as the caller keeps it
+     * @param cache      cache of arrivals responses, shared with other downloads of arrivals
+     */
+    public ArrivalsBatchLoader(Executor publisher, Executor downloader, ResponseCache cache) {
+        this.publisher = publisher;
+        this.downloader = downloader;
+        this.cache = cache;
+    }
+
+    /**
+     * Start loading the arrivals at each of the given stops, cancelling any batch already loading.
+     * A stop that appears more than once is loaded once.
+     *
+     * @param stops    the stops
+     * @param listener listener told as the arrivals at each stop load
+     */
+    public synchronized void load(Collection<Stop> stops, Listener listener) {
+        cancel();
+        current = new Batch(new LinkedHashSet<>(stops), listener);
+        current.start();
+    }
+
+    /**
+     * Stop loading the current batch, if any.  Downloads that have not started are abandoned, downloads
+     * under way are left to finish, and the listener is told of no further results.
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    /**
+     * Produce the data provider used to download the arrivals at stop, which serves them from the cache
+     * when it can
+     *
+     * @param stop the stop
+     * @return the data provider
+     */
+    protected DataProvider createDataProvider(Stop stop) {
+        return new CachingDataProvider(stop.getNumber(), new HttpArrivalDataProvider(stop), cache);
+    }
+
+    /**
+     * The stops in one call to load
+     */
+    private class Batch {
+        private final Set<Stop> stops;
+        private final Listener listener;
+        private volatile boolean cancelled;
+        // number of stops whose result has not yet been published (only touched through the publisher)
+        private int unfinished;
+
+        Batch(Set<Stop> stops, Listener listener) {
+            this.stops = stops;
+            this.listener = listener;
+            unfinished = stops.size();
+        }
+
+        void start() {
+            if (stops.isEmpty()) {
+                publisher.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!cancelled) {
+                            listener.onBatchFinished();
+                        }
+                    }
+                });
+                return;
+            }
+
+            for (final Stop stop : stops) {
+                try {
+                    downloader.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            download(stop);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // the downloader has been shut down; report the stop anyway so the batch can finish
+                    publishLater(stop, null, e);
+                }
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Download the arrivals at stop, then hand the response to the publisher to be parsed
+         */
+        private void download(final Stop stop) {
+            if (cancelled) {
+                return;
+            }
+            String response = null;
+            Exception failure = null;
+            try {
+                response = createDataProvider(stop).dataSourceToString();
+                if (response == null || response.equals("Error")) {
+                    throw new IOException("No arrivals data for stop " + stop.getNumber());
+                }
+            } catch (Exception e) {
+                // any failure, not only one reading the response, must be published so the batch can finish
+                failure = e;
+            }
+
+            publishLater(stop, response, failure);
+        }
+
+        /**
+         * Hand the result of downloading the arrivals at stop to the publisher
+         */
+        private void publishLater(final Stop stop, final String response, final Exception failure) {
+            publisher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    publish(stop, response, failure);
+                }
+            });
+        }
+
+        /**
+         * Parse the arrivals at stop and tell the listener (called through the publisher)
+         */
+        private void publish(Stop stop, String response, Exception failure) {
+            if (cancelled) {
+                return;
+            }
+            if (failure != null) {
+                listener.onArrivalsFailed(stop, failure);
+            } else {
+                try {
+                    stop.clearArrivals();
+                    ArrivalsParser.parseArrivals(stop, response);
+                    listener.onArrivalsLoaded(stop);
+                } catch (Exception e) {
+                    listener.onArrivalsFailed(stop, e);
+                }
+            }
+
+            unfinished--;
+            if (unfinished == 0) {
+                listener.onBatchFinished();
+            }
+        }
+    }
+}
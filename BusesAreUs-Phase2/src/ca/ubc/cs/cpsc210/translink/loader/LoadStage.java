@@ -0,0 +1,15 @@
+package ca.ubc.cs.cpsc210.translink.loader;
+
+/**
+ * The work done by one stage of a StagedLoader
+ */
+public interface LoadStage {
+
+    /**
+     * Do the work of this stage.  Called on a background thread once every stage this one depends on
+     * has loaded.
+     *
+     * @throws Exception if the stage cannot be loaded; stages that depend on it will not be run
+     */
+    void load() throws Exception;
+}
@@ -0,0 +1,204 @@
+package ca.ubc.cs.cpsc210.translink.loader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads data in named stages on a pool of background threads.  Each stage runs as soon as every stage it
+ * depends on has loaded, so independent stages run concurrently, and the listener hears about each stage
+ * as soon as it has loaded rather than when everything has.  Listener methods are called through the
+ * publisher given to the constructor (typically one that posts to the main thread).
+ */
+public class StagedLoader {
+    private final Executor publisher;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private Listener listener;
+    private ExecutorService executor;
+    private int unfinished;
+
+    /**
+     * Listener for the progress of a StagedLoader
+     */
+    public interface Listener {
+
+        /**
+         * Called when a stage has loaded
+         *
+         * @param name   the name of the stage
+         * @param millis time taken by the stage, in milliseconds
+         */
+        void onStageLoaded(String name, long millis);
+
+        /**
+         * Called when a stage has failed, or will not be run because a stage it depends on failed
+         *
+         * @param name  the name of the stage
+         * @param cause the exception or error thrown by the stage, or by the stage it depends on that failed
+         */
+        void onStageFailed(String name, Throwable cause);
+
+        /**
+         * Called once after every stage has loaded or failed
+         */
+        void onLoadFinished();
+    }
+
+    /**
+     * Construct a loader with no stages
+     *
+     * @param publisher executor through which listener methods are called
+     */
+    public StagedLoader(Executor publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Add a stage.  Stages can only depend on stages that have already been added, so there can be no cycles.
+     *
+     * @param name         the name of the stage
+     * @param work         the work done by the stage
+     * @param dependencies names of the stages that must load before this one runs
+     * @throws IllegalArgumentException if a stage called name has already been added, or a dependency has not
+     * @throws IllegalStateException    if the loader has been started
+     */
+    public synchronized void addStage(String name, LoadStage work, String... dependencies) {
+        if (executor != null) {
+            throw new IllegalStateException("Loader already started");
+        }
+        if (stages.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+
+        Stage stage = new Stage(name, work);
+        for (String dependency : dependencies) {
+            Stage required = stages.get(dependency);
+            if (required == null) {
+                throw new IllegalArgumentException("Stage " + name + " depends on unknown stage " + dependency);
+            }
+            required.dependents.add(stage);
+            stage.waitingFor++;
+        }
+        stages.put(name, stage);
+    }
+
+    /**
+     * Start running the stages
+     *
+     * @param listener listener told of the progress of each stage
+     * @throws IllegalStateException if the loader has already been started
+     */
+    public synchronized void start(Listener listener) {
+        if (executor != null) {
+            throw new IllegalStateException("Loader already started");
+        }
+        this.listener = listener;
+        unfinished = stages.size();
+        executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(stages.size(), Runtime.getRuntime().availableProcessors())));
+
+        if (unfinished == 0) {
+            finish();
+            return;
+        }
+        for (Stage stage : stages.values()) {
+            if (stage.waitingFor == 0) {
+                executor.execute(stage);
+            }
+        }
+    }
+
+    /**
+     * Record that stage has loaded and run each dependent stage that is no longer waiting for anything
+     */
+    private synchronized void loaded(Stage stage, final long millis) {
+        final String name = stage.name;
+        publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onStageLoaded(name, millis);
+            }
+        });
+
+        for (Stage dependent : stage.dependents) {
+            dependent.waitingFor--;
+            if (dependent.waitingFor == 0 && !dependent.skipped) {
+                executor.execute(dependent);
+            }
+        }
+        finishedOne();
+    }
+
+    /**
+     * Record that stage has failed, and skip every stage that depends on it, directly or indirectly
+     */
+    private synchronized void failed(Stage stage, final Throwable cause) {
+        final String name = stage.name;
+        publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onStageFailed(name, cause);
+            }
+        });
+
+        for (Stage dependent : stage.dependents) {
+            if (!dependent.skipped) {
+                dependent.skipped = true;
+                failed(dependent, cause);
+            }
+        }
+        finishedOne();
+    }
+
+    private void finishedOne() {
+        unfinished--;
+        if (unfinished == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        executor.shutdown();
+        publisher.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onLoadFinished();
+            }
+        });
+    }
+
+    /**
+     * A stage together with its place in the dependency graph
+     */
+    private class Stage implements Runnable {
+        private final String name;
+        private final LoadStage work;
+        private final List<Stage> dependents = new ArrayList<>();
+        // number of stages this one depends on that have not yet loaded
+        private int waitingFor;
+        // true if a stage this one depends on has failed
+        private boolean skipped;
+
+        Stage(String name, LoadStage work) {
+            this.name = name;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                work.load();
+            } catch (Throwable e) {
+                // errors are caught too, so that every stage finishes and the listener hears of the failure
+                failed(this, e);
+                return;
+            }
+            loaded(this, (System.nanoTime() - start) / 1000000);
+        }
+    }
+}
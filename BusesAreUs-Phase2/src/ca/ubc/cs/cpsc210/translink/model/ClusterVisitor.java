@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * Visitor applied to each stop cluster found by a query
+ */
+public interface ClusterVisitor {
+
+    /**
+     * Visit one cluster
+     *
+     * @param cluster the cluster
+     */
+    void visit(StopCluster cluster);
+}
@@ -0,0 +1,128 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+/**
+ * Hierarchy of bounding boxes over the segments of a pattern path, used to find the segments that
+ * intersect a rectangle without testing every segment.
+ *
+ * The segments are split into leaves of LEAF_SEGMENTS consecutive segments, and the leaves are the bottom
+ * level of a complete binary tree stored in flat arrays (node i has children 2i and 2i + 1; the root is
+ * node 1).  Each node holds the bounding box of all segments below it.
+ */
+final class PathBounds {
+    // number of consecutive segments in each leaf of the tree
+    private static final int LEAF_SEGMENTS = 8;
+
+    private final PatternPath path;
+    private final int segments;
+    // index of the first leaf node; leaf j is node firstLeaf + j
+    private final int firstLeaf;
+    // bounding box of each node; empty nodes have min > max
+    private final double[] minLat;
+    private final double[] maxLat;
+    private final double[] minLon;
+    private final double[] maxLon;
+
+    /**
+     * Build the hierarchy for path
+     *
+     * @param path the path
+     */
+    PathBounds(PatternPath path) {
+        this.path = path;
+        segments = Math.max(0, path.size() - 1);
+        int leaves = (segments + LEAF_SEGMENTS - 1) / LEAF_SEGMENTS;
+        int first = 1;
+        while (first < leaves) {
+            first *= 2;
+        }
+        firstLeaf = first;
+
+        int nodes = 2 * firstLeaf;
+        minLat = new double[nodes];
+        maxLat = new double[nodes];
+        minLon = new double[nodes];
+        maxLon = new double[nodes];
+        for (int n = 0; n < nodes; n++) {
+            minLat[n] = Double.POSITIVE_INFINITY;
+            maxLat[n] = Double.NEGATIVE_INFINITY;
+            minLon[n] = Double.POSITIVE_INFINITY;
+            maxLon[n] = Double.NEGATIVE_INFINITY;
+        }
+
+        for (int i = 0; i < path.size(); i++) {
+            // point i ends segment i - 1 and starts segment i
+            if (i > 0) {
+                include(firstLeaf + (i - 1) / LEAF_SEGMENTS, path.getLatitude(i), path.getLongitude(i));
+            }
+            if (i < segments) {
+                include(firstLeaf + i / LEAF_SEGMENTS, path.getLatitude(i), path.getLongitude(i));
+            }
+        }
+
+        for (int n = firstLeaf - 1; n >= 1; n--) {
+            minLat[n] = Math.min(minLat[2 * n], minLat[2 * n + 1]);
+            maxLat[n] = Math.max(maxLat[2 * n], maxLat[2 * n + 1]);
+            minLon[n] = Math.min(minLon[2 * n], minLon[2 * n + 1]);
+            maxLon[n] = Math.max(maxLon[2 * n], maxLon[2 * n + 1]);
+        }
+    }
+
+    /**
+     * Visit, in increasing order, each segment of the path that intersects the rectangle formed by
+     * northWest and southEast, as determined by Geometry.rectangleIntersectsLine
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @param visitor   visitor called with the index of each segment in the rectangle
+     */
+    void visitSegmentsInRectangle(LatLon northWest, LatLon southEast, SegmentVisitor visitor) {
+        if (segments == 0) {
+            return;
+        }
+
+        double north = northWest.getLatitude();
+        double west = northWest.getLongitude();
+        double south = southEast.getLatitude();
+        double east = southEast.getLongitude();
+
+        // depth first, left child before right, so segments are visited in order
+        int[] stack = new int[2 * Integer.numberOfTrailingZeros(firstLeaf) + 2];
+        int top = 0;
+        stack[top++] = 1;
+        while (top > 0) {
+            int n = stack[--top];
+            if (maxLat[n] < south || minLat[n] > north || maxLon[n] < west || minLon[n] > east) {
+                continue;
+            }
+            if (n < firstLeaf) {
+                stack[top++] = 2 * n + 1;
+                stack[top++] = 2 * n;
+            } else {
+                visitLeaf(n - firstLeaf, northWest, southEast, visitor);
+            }
+        }
+    }
+
+    private void visitLeaf(int leaf, LatLon northWest, LatLon southEast, SegmentVisitor visitor) {
+        int last = Math.min(segments, (leaf + 1) * LEAF_SEGMENTS);
+        for (int i = leaf * LEAF_SEGMENTS; i < last; i++) {
+            if (Geometry.rectangleIntersectsLine(northWest, southEast, path.getLatitude(i), path.getLongitude(i),
+                    path.getLatitude(i + 1), path.getLongitude(i + 1))) {
+                visitor.visit(i);
+            }
+        }
+    }
+
+    /**
+     * Extend the bounding box of node n to include the point (lat, lon)
+     */
+    private void include(int n, double lat, double lon) {
+        minLat[n] = Math.min(minLat[n], lat);
+        maxLat[n] = Math.max(maxLat[n], lat);
+        minLon[n] = Math.min(minLon[n], lon);
+        maxLon[n] = Math.max(maxLon[n], lon);
+    }
+}
@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * Loads the path of a route pattern on demand, so that paths that are never drawn are never parsed
+ */
+public interface PathSource {
+
+    /**
+     * Load the path
+     *
+     * @return the path
+     */
+    PatternPath loadPath();
+}
@@ -0,0 +1,16 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * Visitor applied to each point of a pattern path, in order, without creating an object per point
+ */
+public interface PathVisitor {
+
+    /**
+     * Visit one point of the path
+     *
+     * @param index the index of the point in the path
+     * @param lat   the latitude of the point
+     * @param lon   the longitude of the point
+     */
+    void visit(int index, double lat, double lon);
+}
@@ -0,0 +1,328 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.MicroDegrees;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The path of a route pattern, stored compactly as a single array of interleaved latitudes and longitudes
+ * rather than as one LatLon object per point.  When every coordinate can be held exactly in microdegrees
+ * (as all of the source data can) the array is an int[] of microdegrees, otherwise it is a double[].
+ */
+public final class PatternPath {
+    public static final PatternPath EMPTY = new PatternPath(new double[0]);
+    // highest zoom level of each band of zoom levels drawn from a simplified path, in increasing order;
+    // paths are drawn in full at zoom levels above the last band
+    private static final int[] DETAIL_ZOOM_LEVELS = {10, 12, 14};
+    // largest distance, in pixels at the highest zoom level of its band, of a dropped point from a simplified path
+    private static final double TOLERANCE_PIXELS = 1.0;
+    // width of the whole world in pixels at zoom level 0
+    private static final double WORLD_PIXELS = 256.0;
+
+    // lat0, lon0, lat1, lon1, ... in degrees; null if coordinates are held in microCoords
+    private final double[] coords;
+    // lat0, lon0, lat1, lon1, ... in microdegrees; null if coordinates are held in coords
+    private final int[] microCoords;
+    // Each of the following is built the first time it is needed.  Paths are shared between the loader
+    // threads and the main thread, so they are volatile, so that a thread that sees one built by another
+    // also sees all of its contents.  Two threads may both build one; either result is equally good.
+    // list view of the points
+    private volatile List<LatLon> points;
+    // simplified path for each band of DETAIL_ZOOM_LEVELS
+    private volatile PatternPath[] levels;
+    // bounding box hierarchy over the segments of this path
+    private volatile PathBounds bounds;
+
+    /**
+     * Construct a path from an array of interleaved coordinates.  If the array is not converted to
+     * microdegrees it is used directly, not copied, so it must not be modified afterwards.
+     *
+     * @param coords latitude and longitude of each point in turn
+     * @throws IllegalArgumentException if coords has an odd length
+     */
+    public PatternPath(double[] coords) {
+        if (coords.length % 2 != 0) {
+            throw new IllegalArgumentException("Path coordinates must come in pairs");
+        }
+        this.microCoords = toMicroDegrees(coords);
+        this.coords = microCoords == null ? coords : null;
+    }
+
+    /**
+     * Construct a path from a list of points
+     *
+     * @param points the points on the path
+     * @return the path
+     */
+    public static PatternPath fromLatLons(List<LatLon> points) {
+        double[] coords = new double[2 * points.size()];
+        int i = 0;
+        for (LatLon point : points) {
+            coords[i++] = point.getLatitude();
+            coords[i++] = point.getLongitude();
+        }
+        return new PatternPath(coords);
+    }
+
+    /**
+     * Get the number of points on the path
+     *
+     * @return the number of points
+     */
+    public int size() {
+        return (coords == null ? microCoords.length : coords.length) / 2;
+    }
+
+    /**
+     * Get the latitude of the point at index i
+     *
+     * @param i the index of the point
+     * @return the latitude
+     */
+    public double getLatitude(int i) {
+        return coords == null ? MicroDegrees.toDegrees(microCoords[2 * i]) : coords[2 * i];
+    }
+
+    /**
+     * Get the longitude of the point at index i
+     *
+     * @param i the index of the point
+     * @return the longitude
+     */
+    public double getLongitude(int i) {
+        return coords == null ? MicroDegrees.toDegrees(microCoords[2 * i + 1]) : coords[2 * i + 1];
+    }
+
+    /**
+     * Get the latitude of the point at index i in microdegrees (rounded if not exact)
+     *
+     * @param i the index of the point
+     * @return the latitude in microdegrees
+     */
+    public int getLatitudeE6(int i) {
+        return coords == null ? microCoords[2 * i] : MicroDegrees.fromDegrees(coords[2 * i]);
+    }
+
+    /**
+     * Get the longitude of the point at index i in microdegrees (rounded if not exact)
+     *
+     * @param i the index of the point
+     * @return the longitude in microdegrees
+     */
+    public int getLongitudeE6(int i) {
+        return coords == null ? microCoords[2 * i + 1] : MicroDegrees.fromDegrees(coords[2 * i + 1]);
+    }
+
+    /**
+     * Get the point at index i as a new LatLon
+     *
+     * @param i the index of the point
+     * @return the point
+     */
+    public LatLon getPoint(int i) {
+        return new LatLon(getLatitude(i), getLongitude(i));
+    }
+
+    /**
+     * Apply visitor to each point of the path in order
+     *
+     * @param visitor the visitor
+     */
+    public void visitPoints(PathVisitor visitor) {
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            visitor.visit(i, getLatitude(i), getLongitude(i));
+        }
+    }
+
+    /**
+     * Get the points of the path as an unmodifiable list.  LatLon objects are created as elements are
+     * accessed; use the index accessors or visitPoints to avoid creating them.
+     *
+     * @return list view of the points on the path
+     */
+    public List<LatLon> asList() {
+        List<LatLon> list = points;
+        if (list == null) {
+            list = new PointList();
+            points = list;
+        }
+        return list;
+    }
+
+    /**
+     * Visit, in increasing order, each segment of this path that intersects the rectangle formed by
+     * northWest and southEast (as determined by Geometry.rectangleIntersectsLine).  Segments are found
+     * through a hierarchy of bounding boxes, built the first time this is called, so parts of the path
+     * far from the rectangle are not examined.
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @param visitor   visitor called with the index of each segment in the rectangle; segment i joins
+     *                  points i and i + 1
+     */
+    public void visitSegmentsInRectangle(LatLon northWest, LatLon southEast, SegmentVisitor visitor) {
+        PathBounds built = bounds;
+        if (built == null) {
+            built = new PathBounds(this);
+            bounds = built;
+        }
+        built.visitSegmentsInRectangle(northWest, southEast, visitor);
+    }
+
+    /**
+     * Get the version of this path to draw at the given zoom level.  At low zoom levels this is a
+     * simplified path, with points that would be drawn within about a pixel of the full path removed.
+     * Simplified paths for all zoom levels are computed together the first time one is needed.
+     *
+     * @param zoomLevel the zoom level of the map
+     * @return the path to draw at zoomLevel (this path, at high zoom levels)
+     */
+    public PatternPath forZoom(int zoomLevel) {
+        for (int i = 0; i < DETAIL_ZOOM_LEVELS.length; i++) {
+            if (zoomLevel <= DETAIL_ZOOM_LEVELS[i]) {
+                PatternPath[] simplified = levels;
+                if (simplified == null) {
+                    simplified = simplifyForZoomLevels();
+                    levels = simplified;
+                }
+                return simplified[i];
+            }
+        }
+        return this;
+    }
+
+    private PatternPath[] simplifyForZoomLevels() {
+        PatternPath[] simplified = new PatternPath[DETAIL_ZOOM_LEVELS.length];
+        for (int i = 0; i < DETAIL_ZOOM_LEVELS.length; i++) {
+            double degreesPerPixel = 360.0 / (WORLD_PIXELS * Math.pow(2, DETAIL_ZOOM_LEVELS[i]));
+            simplified[i] = simplify(TOLERANCE_PIXELS * degreesPerPixel);
+        }
+        return simplified;
+    }
+
+    /**
+     * Simplify this path with the Douglas-Peucker algorithm.  Distances are measured as on a Mercator map,
+     * in degrees of longitude, so a tolerance corresponds to a fixed number of pixels at any one zoom level.
+     * The first and last points are always kept.
+     *
+     * @param tolerance largest distance of a dropped point from the simplified path
+     * @return the simplified path (this path, if no point can be dropped)
+     */
+    public PatternPath simplify(double tolerance) {
+        int size = size();
+        if (size < 3) {
+            return this;
+        }
+
+        // scale latitudes so that both coordinates are in degrees of longitude on a Mercator map
+        double latScale = 1.0 / Math.cos(Math.toRadians(getLatitude(0)));
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        int kept = 2;
+
+        // ranges (first, last) of points still to be simplified
+        int[] stack = new int[2 * size];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            int farthest = farthestPoint(first, last, latScale, tolerance);
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                kept++;
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+
+        if (kept == size) {
+            return this;
+        }
+        double[] simplified = new double[2 * kept];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                simplified[n++] = getLatitude(i);
+                simplified[n++] = getLongitude(i);
+            }
+        }
+        return new PatternPath(simplified);
+    }
+
+    /**
+     * Find the point strictly between first and last that is farthest from the segment joining them
+     *
+     * @return index of the farthest point, or -1 if no point is farther than tolerance
+     */
+    private int farthestPoint(int first, int last, double latScale, double tolerance) {
+        double x1 = getLongitude(first);
+        double y1 = getLatitude(first) * latScale;
+        double dx = getLongitude(last) - x1;
+        double dy = getLatitude(last) * latScale - y1;
+        double lengthSquared = dx * dx + dy * dy;
+
+        int farthest = -1;
+        double maxDistanceSquared = tolerance * tolerance;
+        for (int i = first + 1; i < last; i++) {
+            double px = getLongitude(i) - x1;
+            double py = getLatitude(i) * latScale - y1;
+            // project onto the segment, clamped to its end points
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+            double ex = px - t * dx;
+            double ey = py - t * dy;
+            double distanceSquared = ex * ex + ey * ey;
+            if (distanceSquared > maxDistanceSquared) {
+                maxDistanceSquared = distanceSquared;
+                farthest = i;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Convert coordinates to microdegrees if every one of them converts exactly
+     *
+     * @param coords coordinates in degrees
+     * @return the coordinates in microdegrees, or null if any would change in value
+     */
+    private static int[] toMicroDegrees(double[] coords) {
+        for (double coord : coords) {
+            if (!MicroDegrees.isExact(coord)) {
+                return null;
+            }
+        }
+
+        int[] micro = new int[coords.length];
+        for (int i = 0; i < coords.length; i++) {
+            micro[i] = MicroDegrees.fromDegrees(coords[i]);
+        }
+        return micro;
+    }
+
+    /**
+     * Unmodifiable list view of the points of the path
+     */
+    private class PointList extends AbstractList<LatLon> implements RandomAccess {
+        @Override
+        public LatLon get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return getPoint(index);
+        }
+
+        @Override
+        public int size() {
+            return PatternPath.this.size();
+        }
+    }
+}
@@ -2,8 +2,12 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a bus route with a route number, name, list of stops, and list of RoutePatterns.
@@ -11,12 +15,27 @@ import java.util.List;
  * Invariants:
  * - no duplicates in list of stops
  * - iterator iterates over stops in the order in which they were added to the route
+ * <p/>
+ * Stops are held in a LinkedHashSet, so adding, finding and removing a stop take constant time
+ * while the order in which stops were added is kept.  Patterns are indexed by name, so finding or
+ * creating a pattern also takes constant time.
+ * <p>
+ * Routes are loaded on background threads while they are drawn on the main thread, so stops and patterns
+ * are changed and read under the route's lock, and getStops and getPatterns return copies.  The lock is never
+ * held while a stop is called, so a route and a stop linking to each other on different threads cannot
+ * deadlock.
  */
 public class Route implements Iterable<Stop> {
-    private List<Stop> stops;
+    private Set<Stop> stops;
+    // unmodifiable copy of stops returned by getStops; made when first needed after stops change
+    private List<Stop> stopList;
     private String number;
-    private String name;
+    private volatile String name;
     private List<RoutePattern> patterns = new ArrayList<>();
+    // unmodifiable copy of patterns returned by getPatterns; made when first needed after patterns change
+    private List<RoutePattern> patternList;
+    // each pattern in patterns, keyed by its name
+    private Map<String, RoutePattern> patternsByName = new HashMap<>();
 
     /**
      * Constructs a route with given number.
@@ -26,7 +45,7 @@ public class Route implements Iterable<Stop> {
      */
     public Route(String number) {
         this.number = number;
-        this.stops = new ArrayList<>();
+        this.stops = new LinkedHashSet<>();
     }
 
     /**
@@ -52,9 +71,11 @@ public class Route implements Iterable<Stop> {
      *
      * @param pattern the route pattern to be added
      */
-    public void addPattern(RoutePattern pattern) {
-        if (!patterns.contains(pattern)) {
+    public synchronized void addPattern(RoutePattern pattern) {
+        if (!patternsByName.containsKey(pattern.getName())) {
+            patternsByName.put(pattern.getName(), pattern);
             patterns.add(pattern);
+            patternList = null;
         }
     }
 
@@ -64,8 +85,10 @@ public class Route implements Iterable<Stop> {
      * @param stop the stop to add to this route
      */
     public void addStop(Stop stop) {
-        if (!hasStop(stop)) {
-            stops.add(stop);
+        synchronized (this) {
+            if (stops.add(stop)) {
+                stopList = null;
+            }
         }
         stop.addRoute(this);
     }
@@ -76,19 +99,27 @@ public class Route implements Iterable<Stop> {
      * @param stop the stop to remove from this route
      */
     public void removeStop(Stop stop) {
-        if (hasStop(stop)) {
-            stops.remove(stop);
-            stop.removeRoute(this);
+        synchronized (this) {
+            if (!stops.remove(stop)) {
+                return;
+            }
+            stopList = null;
         }
+        stop.removeRoute(this);
     }
 
     /**
-     * Return all the stops in this route, in the order in which they were added
+     * Return all the stops in this route, in the order in which they were added.  The list is a snapshot:
+     * a copy of the stops at the time of the call, shared by calls until the stops next change, and it does
+     * not reflect stops added or removed afterwards.
      *
-     * @return An unmodifiable list of all the stops
+     * @return An unmodifiable copy of the list of all the stops
      */
-    public List<Stop> getStops() {
-        return Collections.unmodifiableList(stops);
+    public synchronized List<Stop> getStops() {
+        if (stopList == null) {
+            stopList = Collections.unmodifiableList(new ArrayList<>(stops));
+        }
+        return stopList;
     }
 
     /**
@@ -97,7 +128,7 @@ public class Route implements Iterable<Stop> {
      * @param stop the stop
      * @return true if route has a stop at given stop
      */
-    public boolean hasStop(Stop stop) {
+    public synchronized boolean hasStop(Stop stop) {
         return stops.contains(stop);
     }
 
@@ -131,8 +162,7 @@ public class Route implements Iterable<Stop> {
 
     @Override
     public Iterator<Stop> iterator() {
-        // Do not modify the implementation of this method!
-        return stops.iterator();
+        return getStops().iterator();
     }
 
     /**
@@ -158,7 +188,7 @@ public class Route implements Iterable<Stop> {
      * @param direction   the direction of the pattern
      * @return the pattern with the given name
      */
-    public RoutePattern getPattern(String patternName, String destination, String direction) {
+    public synchronized RoutePattern getPattern(String patternName, String destination, String direction) {
         RoutePattern pattern = getPattern(patternName);
         pattern.setDestination(destination);
         pattern.setDirection(direction);
@@ -172,22 +202,25 @@ public class Route implements Iterable<Stop> {
      * @param patternName the name of the pattern
      * @return the pattern with the given name
      */
-    public RoutePattern getPattern(String patternName) {
-        for (RoutePattern pattern : patterns) {
-            String name = pattern.getName();
-            if (name != null && name.equals(patternName)) {
-                return pattern;
-            }
+    public synchronized RoutePattern getPattern(String patternName) {
+        RoutePattern pattern = patternsByName.get(patternName);
+        if (pattern != null) {
+            return pattern;
         }
+        // the new pattern adds itself to this route
         return new RoutePattern(patternName, "", "", this);
     }
 
     /**
-     * Return all the patterns for this route as a list
+     * Return all the patterns for this route as a list.  As for getStops, the list is a copy of the patterns
+     * at the time of the call, so it can be iterated while patterns are still being added.
      *
-     * @return an unmodifiable list of the patterns for this route
+     * @return an unmodifiable copy of the list of the patterns for this route
      */
-    public List<RoutePattern> getPatterns() {
-        return Collections.unmodifiableList(patterns);
+    public synchronized List<RoutePattern> getPatterns() {
+        if (patternList == null) {
+            patternList = Collections.unmodifiableList(new ArrayList<>(patterns));
+        }
+        return patternList;
     }
 }
@@ -1,39 +1,38 @@
 package ca.ubc.cs.cpsc210.translink.model;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Manages all routes.
  * <p>
- * Singleton pattern applied to ensure only a single instance of this class that
- * is globally accessible throughout application.
+ * The route manager in use throughout the application is that of the current TransitNetwork, returned by
+ * getInstance().  Other route managers are only made as part of a network being built off to the side.
+ * <p>
+ * Safe for concurrent use.  Lookups and iteration take no locks, and concurrent requests for a route
+ * that does not yet exist all get the same new route.
  */
 public class RouteManager implements Iterable<Route> {
-    private static RouteManager instance;
     // Use this field to hold all of the routes.
-    // Do not change this field or its type, as the iterator method depends on it
-    private Map<String, Route> routeMap;
+    // The iterator method depends on this field
+    private ConcurrentMap<String, Route> routeMap;
 
     /**
      * Constructs Route manager with empty collection of routes
      */
-    private RouteManager() {
-        this.routeMap = new HashMap<>();
+    RouteManager() {
+        this.routeMap = new ConcurrentHashMap<>();
     }
 
     /**
-     * Gets one and only instance of this class
+     * Gets the route manager of the current transit network
      *
-     * @return instance of class
+     * @return route manager in use by the application
      */
     public static RouteManager getInstance() {
-        // Do not modify the implementation of this method!
-        if (instance == null) {
-            instance = new RouteManager();
-        }
-        return instance;
+        return TransitNetwork.current().getRouteManager();
     }
 
     /**
@@ -51,8 +50,8 @@ public class RouteManager implements Iterable<Route> {
 
         r = new Route(number);
         r.setName("");
-        routeMap.put(number, r);
-        return r;
+        Route existing = routeMap.putIfAbsent(number, r);
+        return existing != null ? existing : r;
     }
 
     /**
@@ -87,9 +86,9 @@ public class RouteManager implements Iterable<Route> {
      * Remove all routes from the route manager
      */
     public void clearRoutes() {
-        for (String routeNo : routeMap.keySet()) {
-            Route r = routeMap.get(routeNo);
-            for (Stop s : r.getStops()) {
+        for (Route r : routeMap.values()) {
+            // copy the stops, as removing the route from a stop also removes the stop from the route
+            for (Stop s : new ArrayList<>(r.getStops())) {
                 s.removeRoute(r);
             }
         }
@@ -2,19 +2,21 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A description of one pattern of a route
- * Each pattern has a name, destination, direction, list of points (of class LatLon), and Route
+ * Each pattern has a name, destination, direction, path of points (stored as a PatternPath), and Route
  */
 public class RoutePattern {
     private String name;
     private String destination;
     private String direction;
-    private List<LatLon> path;
+    // The path and where it is loaded from, replaced together so that a thread never sees the path of one
+    // and the source of another.  Paths are loaded and released on the main thread while loader threads may
+    // set or read them.
+    private final AtomicReference<PathHolder> pathHolder = new AtomicReference<>();
     private Route route;
 
     /**
@@ -30,7 +32,7 @@ public class RoutePattern {
         this.destination = destination;
         this.direction = direction;
         this.route = route;
-        this.path = new ArrayList<>();
+        this.pathHolder.set(new PathHolder(PatternPath.EMPTY, null));
         route.addPattern(this);
     }
 
@@ -100,16 +102,80 @@ public class RoutePattern {
      * @param path the path
      */
     public void setPath(List<LatLon> path) {
-        this.path = Collections.unmodifiableList(path);
+        setPath(PatternPath.fromLatLons(path));
     }
 
     /**
-     * Return the list of coordinates making up this pattern
+     * Set the pattern path
+     *
+     * @param path the path
+     */
+    public void setPath(PatternPath path) {
+        pathHolder.set(new PathHolder(path, null));
+    }
+
+    /**
+     * Set the source from which the pattern path is loaded the first time it is needed, replacing any
+     * path already set
+     *
+     * @param pathSource the source of the path
+     */
+    public void setPathSource(PathSource pathSource) {
+        pathHolder.set(new PathHolder(null, pathSource));
+    }
+
+    /**
+     * Return the path of this pattern, loading it from its source if necessary.
+     * A loaded path is kept until releasePath is called.
+     *
+     * @return the path of this route pattern
+     */
+    public PatternPath getPatternPath() {
+        PathHolder holder = pathHolder.get();
+        if (holder.path != null) {
+            return holder.path;
+        }
+        PatternPath loaded = holder.pathSource.loadPath();
+        // keep the loaded path only if no other path or source was set while it was loaded
+        pathHolder.compareAndSet(holder, new PathHolder(loaded, holder.pathSource));
+        return loaded;
+    }
+
+    /**
+     * Return the path of this pattern without keeping it: if the path is not already loaded it is loaded
+     * from its source for the caller alone.  Unlike getPatternPath followed by releasePath, this neither
+     * loads nor releases the path held for other users of the pattern, so it is safe to use from one thread
+     * while another is drawing the pattern.
+     *
+     * @return the path of this route pattern
+     */
+    public PatternPath readPath() {
+        PathHolder holder = pathHolder.get();
+        return holder.path != null ? holder.path : holder.pathSource.loadPath();
+    }
+
+    /**
+     * Return the list of coordinates making up this pattern.  The list is a view of the pattern path,
+     * creating LatLon objects as its elements are accessed.
      *
      * @return an unmodifiable list of the coordinates on this route pattern
      */
     public List<LatLon> getPath() {
-        return path;
+        return getPatternPath().asList();
+    }
+
+    /**
+     * Discard a path that was loaded from a path source, to free the memory it uses.
+     * It will be loaded again the next time it is needed.  Has no effect on a path that was set directly.
+     */
+    public void releasePath() {
+        while (true) {
+            PathHolder holder = pathHolder.get();
+            if (holder.pathSource == null || holder.path == null
+                    || pathHolder.compareAndSet(holder, new PathHolder(null, holder.pathSource))) {
+                return;
+            }
+        }
     }
 
     /**
@@ -129,4 +195,18 @@ public class RoutePattern {
     public void setDestination(String destination) {
         this.destination = destination;
     }
+
+    /**
+     * A path together with the source it was loaded from.  At least one of the two is not null: a path set
+     * directly has no source, and a path not yet loaded, or released, is null.
+     */
+    private static class PathHolder {
+        private final PatternPath path;
+        private final PathSource pathSource;
+
+        PathHolder(PatternPath path, PathSource pathSource) {
+            this.path = path;
+            this.pathSource = pathSource;
+        }
+    }
 }
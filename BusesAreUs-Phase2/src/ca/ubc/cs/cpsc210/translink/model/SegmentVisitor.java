@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * Visitor applied to segments of a pattern path
+ */
+public interface SegmentVisitor {
+
+    /**
+     * Visit one segment of the path
+     *
+     * @param index the index of the segment, which joins the points at index and index + 1 of the path
+     */
+    void visit(int index);
+}
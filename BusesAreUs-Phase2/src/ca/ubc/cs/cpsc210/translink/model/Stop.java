@@ -2,20 +2,33 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.model.exception.RouteException;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.MicroDegrees;
 
 import java.util.*;
 
 /**
  * Represents a bus stop with an number, name, location (lat/lon)
  * set of routes which stop at this stop and a list of arrivals.
+ * <p>
+ * Routes are linked to stops on loader threads, and arrivals and buses are added on download threads, while
+ * the main thread draws them.  Routes are changed and read under the stop's lock, which is never held while a
+ * route is called.  Arrivals and buses are replaced by new lists when changed, so a list that has been read
+ * is never changed afterwards and can be iterated without a lock.
  */
 public class Stop implements Iterable<Arrival> {
+    // value of locnE6 when the location is held in locn; no latitude in microdegrees has this high half
+    private static final long NOT_IN_E6 = Long.MIN_VALUE;
     private Set<Route> routes = new HashSet<>();
     private int number;
     private String name;
-    private LatLon locn;
-    private List<Arrival> arrivals;
-    private List<Bus> buses;
+    // location in microdegrees, latitude in the high half and longitude in the low half, or NOT_IN_E6 if the
+    // location cannot be held exactly in microdegrees and is held in locn instead.  Volatile, and written after
+    // locn, so a reader that reads it first always sees one whole location, even while the stop is moved.
+    private volatile long locnE6;
+    // location, or null if stop has no location; used only when locnE6 is NOT_IN_E6
+    private volatile LatLon locn;
+    private volatile List<Arrival> arrivals;
+    private volatile List<Bus> buses;
 
     /**
      * Constructs a stop with given number, name and location.
@@ -26,11 +39,11 @@ public class Stop implements Iterable<Arrival> {
      * @param locn   location of this stop
      */
     public Stop(int number, String name, LatLon locn) {
-        arrivals = new ArrayList<>();
+        arrivals = Collections.emptyList();
         this.number = number;
         this.name = name;
-        this.locn = locn;
-        buses = new ArrayList<>();
+        setLocn(locn);
+        buses = Collections.emptyList();
     }
 
     /**
@@ -48,9 +61,57 @@ public class Stop implements Iterable<Arrival> {
      * @return the location
      */
     public LatLon getLocn() {
+        long e6 = locnE6;
+        if (e6 != NOT_IN_E6) {
+            return new LatLon(MicroDegrees.toDegrees(latitudeE6(e6)), MicroDegrees.toDegrees(longitudeE6(e6)));
+        }
         return locn;
     }
 
+    /**
+     * getter for latitude of location, without creating a LatLon
+     * Stop must have a location.
+     *
+     * @return the latitude
+     */
+    public double getLatitude() {
+        long e6 = locnE6;
+        return e6 != NOT_IN_E6 ? MicroDegrees.toDegrees(latitudeE6(e6)) : locn.getLatitude();
+    }
+
+    /**
+     * getter for longitude of location, without creating a LatLon
+     * Stop must have a location.
+     *
+     * @return the longitude
+     */
+    public double getLongitude() {
+        long e6 = locnE6;
+        return e6 != NOT_IN_E6 ? MicroDegrees.toDegrees(longitudeE6(e6)) : locn.getLongitude();
+    }
+
+    /**
+     * getter for latitude of location in microdegrees (rounded if not exact)
+     * Stop must have a location.
+     *
+     * @return the latitude in microdegrees
+     */
+    public int getLatitudeE6() {
+        long e6 = locnE6;
+        return e6 != NOT_IN_E6 ? latitudeE6(e6) : MicroDegrees.fromDegrees(locn.getLatitude());
+    }
+
+    /**
+     * getter for longitude of location in microdegrees (rounded if not exact)
+     * Stop must have a location.
+     *
+     * @return the longitude in microdegrees
+     */
+    public int getLongitudeE6() {
+        long e6 = locnE6;
+        return e6 != NOT_IN_E6 ? longitudeE6(e6) : MicroDegrees.fromDegrees(locn.getLongitude());
+    }
+
     /**
      * getter for number
      *
@@ -63,10 +124,10 @@ public class Stop implements Iterable<Arrival> {
     /**
      * getter for set of routes
      *
-     * @return an unmodifiable set of routes using this stop
+     * @return an unmodifiable copy of the set of routes using this stop
      */
-    public Set<Route> getRoutes() {
-        return routes;
+    public synchronized Set<Route> getRoutes() {
+        return Collections.unmodifiableSet(new HashSet<>(routes));
     }
 
     /**
@@ -75,10 +136,12 @@ public class Stop implements Iterable<Arrival> {
      * @param route the route to add
      */
     public void addRoute(Route route) {
-        if (!onRoute(route)) {
-            routes.add(route);
-            route.addStop(this);
+        synchronized (this) {
+            if (!routes.add(route)) {
+                return;
+            }
         }
+        route.addStop(this);
     }
 
     /**
@@ -87,10 +150,12 @@ public class Stop implements Iterable<Arrival> {
      * @param route the route to remove
      */
     public void removeRoute(Route route) {
-        if (onRoute(route)) {
-            routes.remove(route);
-            route.removeStop(this);
+        synchronized (this) {
+            if (!routes.remove(route)) {
+                return;
+            }
         }
+        route.removeStop(this);
     }
 
     /**
@@ -99,7 +164,7 @@ public class Stop implements Iterable<Arrival> {
      * @param route the route
      * @return true if this stop is on given route
      */
-    public boolean onRoute(Route route) {
+    public synchronized boolean onRoute(Route route) {
         return routes.contains(route);
     }
 
@@ -109,16 +174,18 @@ public class Stop implements Iterable<Arrival> {
      *
      * @param arrival the bus arrival to add to stop
      */
-    public void addArrival(Arrival arrival) {
-        arrivals.add(arrival);
-        Collections.sort(arrivals);
+    public synchronized void addArrival(Arrival arrival) {
+        List<Arrival> added = new ArrayList<>(arrivals);
+        added.add(arrival);
+        Collections.sort(added);
+        arrivals = Collections.unmodifiableList(added);
     }
 
     /**
      * Remove all arrivals from this stop
      */
-    public void clearArrivals() {
-        arrivals.clear();
+    public synchronized void clearArrivals() {
+        arrivals = Collections.emptyList();
     }
 
     /**
@@ -132,23 +199,27 @@ public class Stop implements Iterable<Arrival> {
             throw new RouteException("Trying to add bus on route that does not serve stop");
         }
 
-        buses.add(bus);
+        synchronized (this) {
+            List<Bus> added = new ArrayList<>(buses);
+            added.add(bus);
+            buses = Collections.unmodifiableList(added);
+        }
     }
 
     /**
-     * Get unmodifiable list of buses on routes serving this stop
+     * Get unmodifiable list of buses on routes serving this stop, as they were at the time of the call
      *
      * @return unmodifiable list of buses
      */
     public List<Bus> getBuses() {
-        return Collections.unmodifiableList(buses);
+        return buses;
     }
 
     /**
      * Clear all buses from this stop
      */
-    public void clearBuses() {
-        buses.clear();
+    public synchronized void clearBuses() {
+        buses = Collections.emptyList();
     }
 
     /**
@@ -195,11 +266,27 @@ public class Stop implements Iterable<Arrival> {
     }
 
     /**
-     * setter for location
+     * setter for location.  A location that can be held exactly in microdegrees is stored that way.
+     * The new location replaces the old one in a single write, so getters never see part of each.
      *
      * @param locn the new location
      */
     public void setLocn(LatLon locn) {
-        this.locn = locn;
+        if (locn != null && MicroDegrees.isExact(locn.getLatitude()) && MicroDegrees.isExact(locn.getLongitude())) {
+            // locn is left as it is, as a reader that has just seen NOT_IN_E6 may still read it
+            this.locnE6 = ((long) MicroDegrees.fromDegrees(locn.getLatitude()) << 32)
+                    | (MicroDegrees.fromDegrees(locn.getLongitude()) & 0xFFFFFFFFL);
+        } else {
+            this.locn = locn;
+            this.locnE6 = NOT_IN_E6;
+        }
+    }
+
+    private static int latitudeE6(long e6) {
+        return (int) (e6 >> 32);
+    }
+
+    private static int longitudeE6(long e6) {
+        return (int) e6;
     }
 }
@@ -0,0 +1,99 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+/**
+ * A group of nearby stops, drawn as one marker at some zoom levels.  A cluster of one stop is the stop
+ * itself, located exactly at the stop; a larger cluster is located at the centroid of its stops.
+ *
+ * Positions are held in Web Mercator coordinates scaled so that the whole world spans 0 to 1 in x
+ * (west to east) and y (north to south).  The same cluster object is returned at every zoom level at
+ * which its stops are grouped together, so it can be used as a key for the marker that draws it.
+ */
+public final class StopCluster {
+    private final double x;
+    private final double y;
+    private final int count;
+    // the stop, if this cluster is a single stop; null otherwise
+    private final Stop stop;
+
+    /**
+     * Construct a cluster of a single stop
+     *
+     * @param stop the stop, which must have a location
+     */
+    StopCluster(Stop stop) {
+        this(mercatorX(stop.getLongitude()), mercatorY(stop.getLatitude()), 1, stop);
+    }
+
+    /**
+     * Construct a cluster of count stops centred at (x, y)
+     */
+    StopCluster(double x, double y, int count) {
+        this(x, y, count, null);
+    }
+
+    private StopCluster(double x, double y, int count, Stop stop) {
+        this.x = x;
+        this.y = y;
+        this.count = count;
+        this.stop = stop;
+    }
+
+    /**
+     * Get the number of stops in this cluster
+     *
+     * @return the number of stops
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the stop, if this cluster is a single stop
+     *
+     * @return the stop, or null if this cluster has more than one stop
+     */
+    public Stop getStop() {
+        return stop;
+    }
+
+    /**
+     * Get the location of this cluster: the location of its stop if it is a single stop, and otherwise
+     * the centroid of its stops
+     *
+     * @return the location
+     */
+    public LatLon getLocn() {
+        if (stop != null) {
+            return stop.getLocn();
+        }
+        double lat = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+        double lon = x * 360.0 - 180.0;
+        return new LatLon(lat, lon);
+    }
+
+    double getX() {
+        return x;
+    }
+
+    double getY() {
+        return y;
+    }
+
+    /**
+     * Convert longitude to Mercator x, from 0 (180 W) to 1 (180 E)
+     */
+    static double mercatorX(double lon) {
+        return (lon + 180.0) / 360.0;
+    }
+
+    /**
+     * Convert latitude to Mercator y, from 0 (far north) to 1 (far south)
+     */
+    static double mercatorY(double lat) {
+        double sin = Math.sin(Math.toRadians(lat));
+        double y = 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+        return Math.min(1.0, Math.max(0.0, y));
+    }
+}
@@ -0,0 +1,191 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchy of stop clusters for every zoom level, built once over a set of stops, in the style of
+ * supercluster.  Starting from the individual stops, the clusters for each zoom level are made by merging
+ * the clusters of the next higher zoom level that lie within CLUSTER_RADIUS_PIXELS of one another on the
+ * map at that zoom level.  Each level is indexed by a grid of cells one cluster radius wide, so a query
+ * for the clusters in a rectangle takes time proportional to the number of clusters it returns.
+ */
+final class StopClusterIndex {
+    // lowest zoom level at which stops are clustered
+    static final int MIN_ZOOM = 0;
+    // highest zoom level at which stops are clustered; above it every stop is shown on its own
+    static final int MAX_ZOOM = 16;
+    // clusters at a zoom level are merged if they are within this many pixels of one another
+    static final double CLUSTER_RADIUS_PIXELS = 60.0;
+    // width of the whole world in pixels at zoom level 0
+    private static final double WORLD_PIXELS = 256.0;
+
+    // levels[z - MIN_ZOOM] holds the clusters for zoom level z; the last level holds the individual stops
+    private final Level[] levels;
+
+    /**
+     * Build the cluster hierarchy over the given stops.  Stops without a location are ignored.
+     *
+     * @param stops the stops
+     */
+    StopClusterIndex(Iterable<Stop> stops) {
+        List<StopCluster> leaves = new ArrayList<>();
+        for (Stop stop : stops) {
+            if (stop.getLocn() != null) {
+                leaves.add(new StopCluster(stop));
+            }
+        }
+
+        levels = new Level[MAX_ZOOM - MIN_ZOOM + 2];
+        levels[levels.length - 1] = new Level(leaves, radius(MAX_ZOOM + 1));
+        for (int z = MAX_ZOOM; z >= MIN_ZOOM; z--) {
+            double radius = radius(z);
+            // index the clusters of the next zoom level by cells one merge radius wide, then merge them
+            Level finer = new Level(levels[z - MIN_ZOOM + 1].clusters, radius);
+            levels[z - MIN_ZOOM] = new Level(finer.merge(radius), radius);
+        }
+    }
+
+    /**
+     * Visit each cluster, at the given zoom level, whose location is inside of, or on the boundary of,
+     * the rectangle formed by northWest and southEast
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @param zoomLevel the zoom level of the map
+     * @param visitor   visitor called once for each cluster in the rectangle
+     */
+    void visitClusters(LatLon northWest, LatLon southEast, int zoomLevel, ClusterVisitor visitor) {
+        int z = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM + 1, zoomLevel));
+        levels[z - MIN_ZOOM].visit(StopCluster.mercatorX(northWest.getLongitude()),
+                StopCluster.mercatorY(northWest.getLatitude()),
+                StopCluster.mercatorX(southEast.getLongitude()),
+                StopCluster.mercatorY(southEast.getLatitude()), visitor);
+    }
+
+    /**
+     * Cluster radius at zoom level z, in Mercator units
+     */
+    private static double radius(int z) {
+        return CLUSTER_RADIUS_PIXELS / (WORLD_PIXELS * Math.pow(2, z));
+    }
+
+    /**
+     * The clusters of one zoom level, indexed by a grid of square cells
+     */
+    private static class Level {
+        private final List<StopCluster> clusters;
+        private final double cellSize;
+        private final Map<Long, List<StopCluster>> cells = new HashMap<>();
+
+        Level(List<StopCluster> clusters, double cellSize) {
+            this.clusters = clusters;
+            this.cellSize = cellSize;
+            for (StopCluster c : clusters) {
+                Long key = keyOf(cellOf(c.getX()), cellOf(c.getY()));
+                List<StopCluster> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<>();
+                    cells.put(key, cell);
+                }
+                cell.add(c);
+            }
+        }
+
+        /**
+         * Merge the clusters of this level that are within radius of one another, taking each cluster in
+         * turn together with all unmerged clusters around it.  A cluster with no neighbours is carried to
+         * the new level unchanged.  The radius must be no larger than the cell size of this level.
+         *
+         * @param radius the merge radius, in Mercator units
+         * @return the merged clusters
+         */
+        List<StopCluster> merge(double radius) {
+            List<StopCluster> merged = new ArrayList<>();
+            Set<StopCluster> used = new HashSet<>();
+            double radiusSquared = radius * radius;
+
+            for (StopCluster c : clusters) {
+                if (!used.add(c)) {
+                    continue;
+                }
+
+                int count = c.getCount();
+                double sumX = c.getX() * count;
+                double sumY = c.getY() * count;
+                int col = cellOf(c.getX());
+                int row = cellOf(c.getY());
+                for (int r = row - 1; r <= row + 1; r++) {
+                    for (int k = col - 1; k <= col + 1; k++) {
+                        List<StopCluster> cell = cells.get(keyOf(k, r));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (StopCluster n : cell) {
+                            double dx = n.getX() - c.getX();
+                            double dy = n.getY() - c.getY();
+                            if (dx * dx + dy * dy <= radiusSquared && used.add(n)) {
+                                count += n.getCount();
+                                sumX += n.getX() * n.getCount();
+                                sumY += n.getY() * n.getCount();
+                            }
+                        }
+                    }
+                }
+
+                merged.add(count == c.getCount() ? c : new StopCluster(sumX / count, sumY / count, count));
+            }
+            return merged;
+        }
+
+        /**
+         * Visit the clusters in the rectangle from (minX, minY) to (maxX, maxY)
+         */
+        void visit(double minX, double minY, double maxX, double maxY, ClusterVisitor visitor) {
+            int firstCol = cellOf(minX);
+            int lastCol = cellOf(maxX);
+            int firstRow = cellOf(minY);
+            int lastRow = cellOf(maxY);
+            if ((long) (lastCol - firstCol + 1) * (lastRow - firstRow + 1) > cells.size()) {
+                // rectangle spans more cells than are occupied
+                for (StopCluster c : clusters) {
+                    visitIfInside(c, minX, minY, maxX, maxY, visitor);
+                }
+                return;
+            }
+
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int k = firstCol; k <= lastCol; k++) {
+                    List<StopCluster> cell = cells.get(keyOf(k, r));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (StopCluster c : cell) {
+                        visitIfInside(c, minX, minY, maxX, maxY, visitor);
+                    }
+                }
+            }
+        }
+
+        private static void visitIfInside(StopCluster c, double minX, double minY, double maxX, double maxY,
+                                          ClusterVisitor visitor) {
+            if (minX <= c.getX() && c.getX() <= maxX && minY <= c.getY() && c.getY() <= maxY) {
+                visitor.visit(c);
+            }
+        }
+
+        private int cellOf(double coord) {
+            return (int) Math.floor(coord / cellSize);
+        }
+
+        private static Long keyOf(int col, int row) {
+            return ((long) row << 32) | (col & 0xffffffffL);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial index over stops, used by the StopManager to answer nearest, k-nearest and rectangle
+ * stop queries without examining every stop.
+ * <p>
+ * Stops are bucketed into a uniform grid of CELL_DEGREES x CELL_DEGREES cells keyed by row and column.
+ * A query visits rings of cells around the query point, nearest ring first, and stops as soon as no
+ * remaining ring can hold a stop closer than the best one found so far.
+ * <p>
+ * Stops with no location are not indexed.
+ * <p>
+ * Safe for concurrent use.  Queries take no locks: each cell's list of stops is replaced rather than
+ * changed when a stop is added or removed, so a query sees every cell either before or after a change.
+ * Changes are serialized on the grid.
+ */
+class StopGrid {
+    /**
+     * width and height of a grid cell in degrees (roughly 1.1km north-south, 0.7km east-west in Vancouver)
+     */
+    static final double CELL_DEGREES = 0.01;
+    private static final double EARTH_RADIUS = 6371000;   // must match SphericalGeometry
+
+    private Map<Long, List<Stop>> cells;
+    private volatile int minRow;
+    private volatile int maxRow;
+    private volatile int minCol;
+    private volatile int maxCol;
+
+    /**
+     * Constructs an empty grid
+     */
+    StopGrid() {
+        cells = new ConcurrentHashMap<>();
+        clear();
+    }
+
+    /**
+     * Add stop to the cell containing its location.  Stops with no location are ignored.
+     *
+     * @param stop the stop to add
+     */
+    synchronized void add(Stop stop) {
+        LatLon locn = stop.getLocn();
+        if (locn == null) {
+            return;
+        }
+
+        int row = rowOf(locn.getLatitude());
+        int col = colOf(locn.getLongitude());
+        Long key = keyOf(row, col);
+        List<Stop> cell = cells.get(key);
+        List<Stop> updated = new ArrayList<>(cell == null ? 1 : cell.size() + 1);
+        if (cell != null) {
+            updated.addAll(cell);
+        }
+        updated.add(stop);
+
+        // widen the bounds before publishing the cell, so a query never skips a stop it can see
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+        cells.put(key, updated);
+    }
+
+    /**
+     * Remove stop from the cell containing the given location (the location at which it was added).
+     *
+     * @param stop the stop to remove
+     * @param locn the location at which stop was indexed (may be null, in which case nothing is removed)
+     */
+    synchronized void remove(Stop stop, LatLon locn) {
+        if (locn == null) {
+            return;
+        }
+
+        Long key = keyOf(rowOf(locn.getLatitude()), colOf(locn.getLongitude()));
+        List<Stop> cell = cells.get(key);
+        if (cell != null && cell.contains(stop)) {
+            List<Stop> updated = new ArrayList<>(cell);
+            updated.remove(stop);
+            if (updated.isEmpty()) {
+                cells.remove(key);
+            } else {
+                cells.put(key, updated);
+            }
+        }
+    }
+
+    /**
+     * Remove all stops from the grid
+     */
+    synchronized void clear() {
+        cells.clear();
+        minRow = Integer.MAX_VALUE;
+        maxRow = Integer.MIN_VALUE;
+        minCol = Integer.MAX_VALUE;
+        maxCol = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Find stop nearest to pt that is less than maxDistance metres away.  When two stops are equally
+     * distant, the one with the smaller number is returned.
+     *
+     * @param pt          point to which nearest stop is sought
+     * @param maxDistance stops this far away or further are ignored
+     * @return nearest stop, or null if no stop is less than maxDistance metres from pt
+     */
+    Stop findNearest(LatLon pt, double maxDistance) {
+        NearestStops nearest = new NearestStops(pt, 1, maxDistance);
+        search(nearest);
+        return nearest.isEmpty() ? null : nearest.worst().stop;
+    }
+
+    /**
+     * Find up to k stops nearest to pt that are less than maxDistance metres away, ordered by
+     * increasing distance from pt (equally distant stops are ordered by number).
+     *
+     * @param pt          point to which nearest stops are sought
+     * @param k           maximum number of stops to return
+     * @param maxDistance stops this far away or further are ignored
+     * @return list of at most k nearest stops, nearest first
+     */
+    List<Stop> findNearest(LatLon pt, int k, double maxDistance) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+
+        NearestStops nearest = new NearestStops(pt, k, maxDistance);
+        search(nearest);
+        return nearest.toSortedList();
+    }
+
+    /**
+     * Visit rings of cells around the query point of nearest, offering each stop found to nearest,
+     * until no remaining ring can contain a stop that nearest would accept.
+     */
+    private void search(NearestStops nearest) {
+        LatLon pt = nearest.pt;
+        double lat = pt.getLatitude();
+        double lon = pt.getLongitude();
+        int row = rowOf(lat);
+        int col = colOf(lon);
+
+        for (int ring = 0; !ringOutsideGrid(row, col, ring); ring++) {
+            if (ringLowerBound(lat, lon, row, col, ring) >= nearest.bound()) {
+                break;
+            }
+
+            for (int r = row - ring; r <= row + ring; r++) {
+                // interior rows of the ring only contribute their first and last column
+                int step = (r == row - ring || r == row + ring) ? 1 : Math.max(1, 2 * ring);
+                for (int c = col - ring; c <= col + ring; c += step) {
+                    List<Stop> cell = cells.get(keyOf(r, c));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Stop s : cell) {
+                        nearest.offer(s, SphericalGeometry.distanceBetween(
+                                s.getLatitude(), s.getLongitude(), pt.getLatitude(), pt.getLongitude()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit every stop inside of, or on the boundary of, the rectangle formed by northWest and southEast.
+     * Only cells overlapping the rectangle are examined; when the rectangle spans more cells than are
+     * occupied, the occupied cells are examined instead.
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @param visitor   visitor called once for each stop in the rectangle
+     */
+    void visitRectangle(LatLon northWest, LatLon southEast, StopVisitor visitor) {
+        int firstRow = Math.max(minRow, rowOf(southEast.getLatitude()));
+        int lastRow = Math.min(maxRow, rowOf(northWest.getLatitude()));
+        int firstCol = Math.max(minCol, colOf(northWest.getLongitude()));
+        int lastCol = Math.min(maxCol, colOf(southEast.getLongitude()));
+        if (firstRow > lastRow || firstCol > lastCol) {
+            return;
+        }
+
+        long spanned = (long) (lastRow - firstRow + 1) * (lastCol - firstCol + 1);
+        if (spanned <= cells.size()) {
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int c = firstCol; c <= lastCol; c++) {
+                    visitCell(cells.get(keyOf(r, c)), northWest, southEast, visitor);
+                }
+            }
+        } else {
+            for (Map.Entry<Long, List<Stop>> entry : cells.entrySet()) {
+                long key = entry.getKey();
+                int r = (int) (key >> 32);
+                int c = (int) key;
+                if (firstRow <= r && r <= lastRow && firstCol <= c && c <= lastCol) {
+                    visitCell(entry.getValue(), northWest, southEast, visitor);
+                }
+            }
+        }
+    }
+
+    private static void visitCell(List<Stop> cell, LatLon northWest, LatLon southEast, StopVisitor visitor) {
+        if (cell == null) {
+            return;
+        }
+        for (Stop s : cell) {
+            if (Geometry.rectangleContainsPoint(northWest, southEast, s.getLatitude(), s.getLongitude())) {
+                visitor.visit(s);
+            }
+        }
+    }
+
+    /**
+     * Determine if every cell of the given ring lies outside the occupied part of the grid
+     */
+    private boolean ringOutsideGrid(int row, int col, int ring) {
+        return row - ring < minRow && row + ring > maxRow && col - ring < minCol && col + ring > maxCol;
+    }
+
+    /**
+     * Lower bound on the distance in metres from (lat, lon) to any point in the given ring of cells
+     * around the cell at (row, col).  The ring is covered by four strips (top and bottom rows,
+     * left and right columns) and the smallest bound of the four is returned.
+     */
+    private static double ringLowerBound(double lat, double lon, int row, int col, int ring) {
+        if (ring == 0) {
+            return 0;
+        }
+
+        double south = (row - ring) * CELL_DEGREES;
+        double north = (row + ring + 1) * CELL_DEGREES;
+        double west = (col - ring) * CELL_DEGREES;
+        double east = (col + ring + 1) * CELL_DEGREES;
+
+        double top = boxLowerBound(lat, lon, north - CELL_DEGREES, north, west, east);
+        double bottom = boxLowerBound(lat, lon, south, south + CELL_DEGREES, west, east);
+        double left = boxLowerBound(lat, lon, south, north, west, west + CELL_DEGREES);
+        double right = boxLowerBound(lat, lon, south, north, east - CELL_DEGREES, east);
+
+        return Math.min(Math.min(top, bottom), Math.min(left, right));
+    }
+
+    /**
+     * Lower bound on the distance in metres from (lat, lon) to any point in the box bounded by the
+     * given latitudes and longitudes.  Uses the haversine formula with the smallest latitude and
+     * longitude separations possible and the smallest cosine of latitude found in the box, each of
+     * which can only make the haversine term smaller.
+     */
+    static double boxLowerBound(double lat, double lon, double south, double north, double west, double east) {
+        double deltaLat = Math.max(0, Math.max(south - lat, lat - north));
+        double deltaLon = Math.min(180, Math.max(0, Math.max(west - lon, lon - east)));
+        double maxAbsLat = Math.max(Math.abs(south), Math.abs(north));
+
+        double dLat = deltaLat / 180.0 * Math.PI;
+        double dLon = deltaLon / 180.0 * Math.PI;
+        double cosLat = Math.cos(lat / 180.0 * Math.PI);
+        double cosBox = Math.cos(Math.min(90, maxAbsLat) / 180.0 * Math.PI);
+
+        double a = Math.sin(dLat / 2.0) * Math.sin(dLat / 2.0)
+                + Math.max(0, cosLat * cosBox) * Math.sin(dLon / 2.0) * Math.sin(dLon / 2.0);
+        a = Math.min(1, a);
+        double c = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        // shave a little off to absorb rounding differences from SphericalGeometry
+        return c * EARTH_RADIUS * (1 - 1e-9);
+    }
+
+    static int rowOf(double lat) {
+        return (int) Math.floor(lat / CELL_DEGREES);
+    }
+
+    static int colOf(double lon) {
+        return (int) Math.floor(lon / CELL_DEGREES);
+    }
+
+    private static long keyOf(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    /**
+     * A stop found by a query, with its distance from the query point
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        private final Stop stop;
+        private final double distance;
+
+        Candidate(Stop stop, double distance) {
+            this.stop = stop;
+            this.distance = distance;
+        }
+
+        /**
+         * Order candidates by distance, then by stop number
+         */
+        @Override
+        public int compareTo(Candidate other) {
+            int result = Double.compare(distance, other.distance);
+            if (result != 0) {
+                return result;
+            }
+            // compared rather than subtracted, which overflows for numbers far apart
+            // (Integer.compare needs API 19)
+            int number = stop.getNumber();
+            int otherNumber = other.stop.getNumber();
+            return number < otherNumber ? -1 : (number == otherNumber ? 0 : 1);
+        }
+    }
+
+    /**
+     * The k best candidates seen so far that are less than maxDistance metres from pt,
+     * held in a heap with the worst candidate on top.
+     */
+    private static class NearestStops {
+        private final LatLon pt;
+        private final int k;
+        private final double maxDistance;
+        private final PriorityQueue<Candidate> heap;
+
+        NearestStops(LatLon pt, int k, double maxDistance) {
+            this.pt = pt;
+            this.k = k;
+            this.maxDistance = maxDistance;
+            this.heap = new PriorityQueue<>(Math.min(k, 64), Collections.<Candidate>reverseOrder());
+        }
+
+        /**
+         * Consider stop at given distance from pt, keeping it if it is among the k best seen so far
+         */
+        void offer(Stop stop, double distance) {
+            if (distance >= maxDistance) {
+                return;
+            }
+
+            if (heap.size() < k) {
+                heap.add(new Candidate(stop, distance));
+            } else {
+                Candidate candidate = new Candidate(stop, distance);
+                if (candidate.compareTo(heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(candidate);
+                }
+            }
+        }
+
+        /**
+         * Distance below which a stop could still be accepted
+         */
+        double bound() {
+            return heap.size() < k ? maxDistance : heap.peek().distance;
+        }
+
+        boolean isEmpty() {
+            return heap.isEmpty();
+        }
+
+        Candidate worst() {
+            return heap.peek();
+        }
+
+        List<Stop> toSortedList() {
+            List<Candidate> candidates = new ArrayList<>(heap);
+            Collections.sort(candidates);
+            List<Stop> stops = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                stops.add(candidate.stop);
+            }
+            return stops;
+        }
+    }
+}
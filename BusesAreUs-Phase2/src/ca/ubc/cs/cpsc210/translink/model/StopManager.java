@@ -2,46 +2,68 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
-import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Manages all bus stops.
  * <p>
- * Singleton pattern applied to ensure only a single instance of this class that
- * is globally accessible throughout application.
+ * The stop manager in use throughout the application is that of the current TransitNetwork, returned by
+ * getInstance().  Other stop managers are only made as part of a network being built off to the side.
+ * <p>
+ * Safe for concurrent use.  Lookups, iteration and spatial queries take no locks; iteration sees stops
+ * added or removed while it runs at most once.  Changes to a stop are serialized by a lock chosen by the
+ * stop's number, so changes to different stops rarely wait for one another.
  */
 public class StopManager implements Iterable<Stop> {
     public static final int RADIUS = 10000;
-    private static StopManager instance;
+    // number of locks over which changes to stops are spread; must be a power of two
+    private static final int LOCK_STRIPES = 16;
+    // Thread on which clusters of every stop manager are rebuilt after stops change, so that drawing the map
+    // never waits for a rebuild
+    private static final Executor CLUSTER_BUILDER = newClusterBuilder();
     // Use this field to hold all of the stops.
-    // Do not change this field or its type, as the iterator method depends on it
-    private Map<Integer, Stop> stopMap;
-    private Stop selectedStop;
+    // The iterator method depends on this field
+    private StopTable stopTable;
+    // Spatial index over the stops in stopTable that have a location
+    private StopGrid stopGrid;
+    // Clusters of the stops for each zoom level, with the version of the stops they were built from;
+    // built when first needed, and rebuilt on CLUSTER_BUILDER when first needed after stops change
+    private final AtomicReference<Clusters> clusters = new AtomicReference<>();
+    // true while a rebuild of clusters is waiting for or running on CLUSTER_BUILDER
+    private final AtomicBoolean rebuildingClusters = new AtomicBoolean();
+    // Incremented each time stops change, so clusters built from earlier stops are not used
+    private final AtomicInteger stopsVersion = new AtomicInteger();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private volatile Stop selectedStop;
 
     /**
      * Constructs stop manager with empty collection of stops and null as the selected stop
      */
-    private StopManager() {
-        this.stopMap = new HashMap<>();
+    StopManager() {
+        this.stopTable = new StopTable();
+        this.stopGrid = new StopGrid();
         this.selectedStop = null;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
     }
 
     /**
-     * Gets one and only instance of this class
+     * Gets the stop manager of the current transit network
      *
-     * @return instance of class
+     * @return stop manager in use by the application
      */
     public static StopManager getInstance() {
-        // Do not modify the implementation of this method!
-        if (instance == null) {
-            instance = new StopManager();
-        }
-
-        return instance;
+        return TransitNetwork.current().getStopManager();
     }
 
     public Stop getSelected() {
@@ -59,18 +81,37 @@ public class StopManager implements Iterable<Stop> {
      * @return stop with given number
      */
     public Stop getStopWithNumber(int number) {
-        Stop s = stopMap.get(number);
+        Stop s = stopTable.get(number);
         if (s != null) {
             return s;
         }
-        s = new Stop(number, "Bogus stop", null);
-        stopMap.put(number, s);
-        return s;
+        // created under the same lock as getStopWithNumber(int, String, LatLon), so it cannot be added
+        // between that method's lookup and its put and have its name and location lost
+        synchronized (locks[number & (LOCK_STRIPES - 1)]) {
+            s = new Stop(number, "Bogus stop", null);
+            Stop existing = stopTable.putIfAbsent(s);
+            if (existing != null) {
+                return existing;
+            }
+            stopsChanged();
+            return s;
+        }
+    }
+
+    /**
+     * Determine if there is a stop with the given number, without creating one
+     *
+     * @param number the number of the stop
+     * @return true if this manager has a stop with that number
+     */
+    public boolean hasStopWithNumber(int number) {
+        return stopTable.get(number) != null;
     }
 
     /**
      * Get stop with given number, creating it and adding it to the collection of all stops if necessary,
-     * using the given name and location
+     * using the given name and location.  The location of a stop must only be changed through this method,
+     * so that the spatial index used by findNearestTo stays up to date.
      *
      * @param number the number of this stop
      * @param name   the name of this stop
@@ -78,16 +119,26 @@ public class StopManager implements Iterable<Stop> {
      * @return stop with given number
      */
     public Stop getStopWithNumber(int number, String name, LatLon locn) {
-        Stop s = stopMap.get(number);
-        if (s != null) {
+        synchronized (locks[number & (LOCK_STRIPES - 1)]) {
+            Stop s = stopTable.get(number);
+            if (s == null) {
+                s = new Stop(number, name, locn);
+                Stop existing = stopTable.putIfAbsent(s);
+                if (existing == null) {
+                    stopGrid.add(s);
+                    stopsChanged();
+                    return s;
+                }
+                s = existing;
+            }
+
             s.setName(name);
+            stopGrid.remove(s, s.getLocn());
             s.setLocn(locn);
+            stopGrid.add(s);
+            stopsChanged();
             return s;
         }
-
-        s = new Stop(number, name, locn);
-        stopMap.put(number, s);
-        return s;
     }
 
     /**
@@ -97,7 +148,7 @@ public class StopManager implements Iterable<Stop> {
      * @throws StopException when stop manager doesn't contain selected stop
      */
     public void setSelected(Stop selected) throws StopException {
-        if (stopMap.containsKey(selected.getNumber())) {
+        if (stopTable.get(selected.getNumber()) != null) {
             selectedStop = selected;
         } else {
             throw new StopException("No such stop: " + selected.getNumber() + " " + selected.getName());
@@ -117,17 +168,33 @@ public class StopManager implements Iterable<Stop> {
      * @return number of stops added to manager
      */
     public int getNumStops() {
-        return stopMap.size();
+        return stopTable.size();
     }
 
     /**
-     * Remove all stops from stop manager
+     * Remove all stops from stop manager.  Every lock is held while stops are removed, so a stop being
+     * added or moved at the same time is either removed or kept, from both the table and the spatial index.
      */
     public void clearStops() {
-        stopMap.clear();
+        clearStopsHolding(0);
         clearSelectedStop();
     }
 
+    /**
+     * Take the locks from stripe onwards, in order, then remove all stops
+     */
+    private void clearStopsHolding(int stripe) {
+        if (stripe == LOCK_STRIPES) {
+            stopTable.clear();
+            stopGrid.clear();
+            stopsChanged();
+            return;
+        }
+        synchronized (locks[stripe]) {
+            clearStopsHolding(stripe + 1);
+        }
+    }
+
     /**
      * Find nearest stop to given point.  Returns null if no stop is closer than RADIUS metres.
      *
@@ -135,21 +202,175 @@ public class StopManager implements Iterable<Stop> {
      * @return stop closest to pt but less than RADIUS away; null if no stop is within RADIUS metres of pt
      */
     public Stop findNearestTo(LatLon pt) {
-        Stop nearest = null;
-        double nearestDistance = RADIUS;
-        for (Stop s : stopMap.values()) {
-            double distance = SphericalGeometry.distanceBetween(s.getLocn(), pt);
-            if (distance < nearestDistance) {
-                nearestDistance = distance;
-                nearest = s;
+        return stopGrid.findNearest(pt, RADIUS);
+    }
+
+    /**
+     * Find the k stops nearest to given point that are less than maxMetres metres away.
+     *
+     * @param pt        point to which nearest stops are sought
+     * @param k         maximum number of stops to find
+     * @param maxMetres stops at least this far from pt are not included
+     * @return list of at most k stops, sorted by increasing distance from pt
+     */
+    public List<Stop> findKNearest(LatLon pt, int k, double maxMetres) {
+        return stopGrid.findNearest(pt, k, maxMetres);
+    }
+
+    /**
+     * Find all stops that are less than given number of metres away from given point.
+     *
+     * @param pt     point around which stops are sought
+     * @param metres stops at least this far from pt are not included
+     * @return list of stops within metres of pt, sorted by increasing distance from pt
+     */
+    public List<Stop> findWithin(LatLon pt, double metres) {
+        return stopGrid.findNearest(pt, Integer.MAX_VALUE, metres);
+    }
+
+    /**
+     * Find all stops inside of, or on the boundary of, the rectangle formed by northWest and southEast.
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @return list of stops in the rectangle, in no particular order
+     */
+    public List<Stop> stopsInRectangle(LatLon northWest, LatLon southEast) {
+        final List<Stop> stops = new ArrayList<>();
+        stopGrid.visitRectangle(northWest, southEast, new StopVisitor() {
+            @Override
+            public void visit(Stop stop) {
+                stops.add(stop);
+            }
+        });
+        return stops;
+    }
+
+    /**
+     * Visit all stops inside of, or on the boundary of, the rectangle formed by northWest and southEast,
+     * without building a list of them.
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @param visitor   called once for each stop in the rectangle, in no particular order
+     */
+    public void stopsInRectangle(LatLon northWest, LatLon southEast, StopVisitor visitor) {
+        stopGrid.visitRectangle(northWest, southEast, visitor);
+    }
+
+    /**
+     * Visit each cluster of stops, as grouped at the given zoom level, whose location is inside of, or on
+     * the boundary of, the rectangle formed by northWest and southEast.  Clusters for every zoom level are
+     * computed together, so calls only look them up.  After stops change, the clusters computed before the
+     * change are visited while new ones are computed in the background; only if no clusters have ever been
+     * computed are they computed by this call.
+     *
+     * @param northWest the coordinate of the north west corner of the rectangle
+     * @param southEast the coordinate of the south east corner of the rectangle
+     * @param zoomLevel the zoom level of the map
+     * @param visitor   visitor called once for each cluster in the rectangle
+     */
+    public void clustersInRectangle(LatLon northWest, LatLon southEast, int zoomLevel, ClusterVisitor visitor) {
+        clusters().visitClusters(northWest, southEast, zoomLevel, visitor);
+    }
+
+    /**
+     * Compute the clusters of stops for every zoom level now, on the calling thread, if they have not been
+     * computed since the stops last changed, so that clustersInRectangle does not have to
+     */
+    public void prepareClusters() {
+        Clusters kept = clusters.get();
+        if (kept == null || kept.version != stopsVersion.get()) {
+            buildClusters();
+        }
+    }
+
+    /**
+     * Get the clusters of stops.  If they have not been computed since the stops last changed, the clusters
+     * computed before are returned and a rebuild is started on CLUSTER_BUILDER, unless one is under way.
+     */
+    private StopClusterIndex clusters() {
+        Clusters kept = clusters.get();
+        if (kept == null) {
+            return buildClusters();
+        }
+        if (kept.version != stopsVersion.get() && rebuildingClusters.compareAndSet(false, true)) {
+            CLUSTER_BUILDER.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        buildClusters();
+                    } finally {
+                        // stops changed during the rebuild are picked up by the next call to clusters
+                        rebuildingClusters.set(false);
+                    }
+                }
+            });
+        }
+        return kept.index;
+    }
+
+    /**
+     * Compute the clusters of stops and keep them, unless clusters from more recent stops were kept while
+     * they were computed.  Clusters are kept together with the version of the stops they were computed
+     * from, so clusters computed while stops changed are always replaced once the change is complete.
+     *
+     * @return the clusters computed
+     */
+    private StopClusterIndex buildClusters() {
+        // read the version first, so clusters are only taken as built from stops at least this recent
+        int version = stopsVersion.get();
+        StopClusterIndex index = new StopClusterIndex(this);
+        Clusters built = new Clusters(version, index);
+        while (true) {
+            Clusters kept = clusters.get();
+            if ((kept != null && kept.version - version >= 0) || clusters.compareAndSet(kept, built)) {
+                return index;
             }
         }
-        return nearest;
     }
 
+    /**
+     * Record that stops have changed, so that clusters computed before the change are not used
+     */
+    private void stopsChanged() {
+        stopsVersion.incrementAndGet();
+    }
+
+    /**
+     * Iterate over all stops.  Stops can only be removed all together, by clearStops, so the iterator
+     * does not support remove.
+     *
+     * @return iterator over all stops, whose remove method throws UnsupportedOperationException
+     */
     @Override
     public Iterator<Stop> iterator() {
-        // Do not modify the implementation of this method!
-        return stopMap.values().iterator();
+        return stopTable.iterator();
+    }
+
+    private static Executor newClusterBuilder() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "StopClusterBuilder");
+                // never keeps the process alive, and never competes with drawing the map
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Clusters of the stops together with the version of the stops they were computed from
+     */
+    private static class Clusters {
+        private final int version;
+        private final StopClusterIndex index;
+
+        Clusters(int version, StopClusterIndex index) {
+            this.version = version;
+            this.index = index;
+        }
     }
 }
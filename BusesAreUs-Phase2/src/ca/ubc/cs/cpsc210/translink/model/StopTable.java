@@ -0,0 +1,172 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of stops keyed by stop number, used by the StopManager in place of a HashMap<Integer, Stop>.
+ * <p>
+ * Stops are held in one array, using open addressing with linear probing.  A stop's key is its own number,
+ * so there is no separate key array, no boxing of stop numbers and no entry object per stop, and looking
+ * up a stop allocates nothing.  The table is at most half full, so probe sequences stay short.
+ * <p>
+ * Safe for concurrent use.  Lookups and iteration take no locks: slots are only ever filled, never
+ * emptied or moved, and a larger table is filled completely before it replaces the old one.  Additions
+ * are serialized on the table.  Iteration sees stops added while it runs at most once.
+ * <p>
+ * Stops cannot be removed one at a time, only all together by clear, so the iterator's remove method
+ * throws UnsupportedOperationException.
+ */
+final class StopTable implements Iterable<Stop> {
+    private static final int MIN_CAPACITY = 16;   // must be a power of two
+
+    private volatile AtomicReferenceArray<Stop> slots;
+    private volatile int size;
+
+    /**
+     * Constructs an empty table
+     */
+    StopTable() {
+        slots = new AtomicReferenceArray<>(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the stop with the given number
+     *
+     * @param number the number of the stop
+     * @return the stop, or null if there is no stop with that number
+     */
+    Stop get(int number) {
+        AtomicReferenceArray<Stop> table;
+        do {
+            table = slots;
+            Stop stop = find(table, number);
+            if (stop != null) {
+                return stop;
+            }
+            // the stop may have been added to a larger table that replaced this one during the search
+        } while (table != slots);
+        return null;
+    }
+
+    /**
+     * Add stop unless there is already a stop with the same number
+     *
+     * @param stop the stop to add
+     * @return the stop already in the table with the same number, or null if stop was added
+     */
+    synchronized Stop putIfAbsent(Stop stop) {
+        Stop existing = find(slots, stop.getNumber());
+        if (existing != null) {
+            return existing;
+        }
+
+        if (2 * (size + 1) > slots.length()) {
+            AtomicReferenceArray<Stop> larger = new AtomicReferenceArray<>(2 * slots.length());
+            for (int i = 0; i < slots.length(); i++) {
+                Stop s = slots.get(i);
+                if (s != null) {
+                    insert(larger, s);
+                }
+            }
+            slots = larger;
+        }
+        insert(slots, stop);
+        size++;
+        return null;
+    }
+
+    /**
+     * Remove all stops
+     */
+    synchronized void clear() {
+        slots = new AtomicReferenceArray<>(MIN_CAPACITY);
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<Stop> iterator() {
+        return new StopIterator(slots);
+    }
+
+    /**
+     * Find the stop with the given number in table, or the empty slot that ends its probe sequence
+     */
+    private static Stop find(AtomicReferenceArray<Stop> table, int number) {
+        int mask = table.length() - 1;
+        for (int i = slotOf(number, table.length()); ; i = (i + 1) & mask) {
+            Stop stop = table.get(i);
+            if (stop == null || stop.getNumber() == number) {
+                return stop;
+            }
+        }
+    }
+
+    /**
+     * Put stop in the first empty slot of its probe sequence in table
+     */
+    private static void insert(AtomicReferenceArray<Stop> table, Stop stop) {
+        int mask = table.length() - 1;
+        int i = slotOf(stop.getNumber(), table.length());
+        while (table.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        table.set(i, stop);
+    }
+
+    /**
+     * First slot of the probe sequence for a stop number in a table of the given power of two length.  Stop
+     * numbers are mostly consecutive, so they are scattered by Fibonacci hashing: the number is multiplied
+     * by 2^32 divided by the golden ratio, and the slot is taken from the high bits of the product, which
+     * depend on every bit of the number.
+     */
+    private static int slotOf(int number, int length) {
+        return (number * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(length) + 1);
+    }
+
+    /**
+     * Iterator over the stops in one table, in slot order
+     */
+    private static class StopIterator implements Iterator<Stop> {
+        private final AtomicReferenceArray<Stop> table;
+        private int index;
+        private Stop next;
+
+        StopIterator(AtomicReferenceArray<Stop> table) {
+            this.table = table;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Stop next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Stop stop = next;
+            advance();
+            return stop;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && index < table.length()) {
+                next = table.get(index++);
+            }
+        }
+    }
+}
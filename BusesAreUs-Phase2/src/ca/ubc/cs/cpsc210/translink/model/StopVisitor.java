@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * Handles stops found by a StopManager query, one stop at a time
+ */
+public interface StopVisitor {
+
+    /**
+     * Called once for each stop found by the query
+     *
+     * @param stop the stop found
+     */
+    void visit(Stop stop);
+}
@@ -0,0 +1,93 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A complete set of stops and routes: the stop manager and route manager that hold them.
+ * <p>
+ * The network in use by the application is the current network, whose managers are returned by
+ * StopManager.getInstance() and RouteManager.getInstance().  To reload the data, a new network is
+ * built off to the side, by passing it to the parsers or the snapshot reader, and then published, which
+ * replaces the current network in a single atomic step.  Readers that already hold the old network, or
+ * stops and routes from it, keep using it undisturbed until they are done.  Readers that use both managers
+ * should get them from one network, by calling current() once, rather than calling
+ * StopManager.getInstance() and RouteManager.getInstance().
+ * <p>
+ * A network published once it is fully loaded is never seen half built.  When there is nothing better to
+ * show, a network may instead be published as soon as its stops are loaded: its stops are then complete,
+ * but routes, route names, patterns and pattern paths are still being added to it until its loader says
+ * otherwise, and until then readers must not use the patterns of its routes.  In either case the paths of
+ * patterns are loaded and released on demand by whoever draws them, so other threads must read a path with
+ * RoutePattern.readPath rather than getPatternPath.
+ */
+public final class TransitNetwork {
+    private static final AtomicReference<TransitNetwork> current =
+            new AtomicReference<>(new TransitNetwork());
+
+    private final StopManager stopManager;
+    private final RouteManager routeManager;
+
+    /**
+     * Construct an empty network, not yet published
+     */
+    public TransitNetwork() {
+        stopManager = new StopManager();
+        routeManager = new RouteManager();
+    }
+
+    /**
+     * Get the network in use by the application
+     *
+     * @return the current network
+     */
+    public static TransitNetwork current() {
+        return current.get();
+    }
+
+    /**
+     * Make the given network the current network.  If the network being replaced has a selected stop and
+     * the new network has a stop with the same number, that stop becomes the selected stop of the new network.
+     * The stops of the given network must all have been loaded; its routes may still be loading (see above).
+     * The selected stop is carried over before the network is swapped in, so the current network never
+     * appears to have lost its selection.
+     *
+     * @param network the network to publish
+     * @return the network that was replaced
+     */
+    public static TransitNetwork publish(TransitNetwork network) {
+        while (true) {
+            TransitNetwork previous = current.get();
+            Stop selected = previous.stopManager.getSelected();
+            if (selected != null && network.stopManager.hasStopWithNumber(selected.getNumber())) {
+                try {
+                    network.stopManager.setSelected(network.stopManager.getStopWithNumber(selected.getNumber()));
+                } catch (StopException e) {
+                    // cannot happen, as the stop was found in the new network
+                }
+            }
+            // if another network was published meanwhile, carry over its selection instead
+            if (current.compareAndSet(previous, network)) {
+                return previous;
+            }
+        }
+    }
+
+    public StopManager getStopManager() {
+        return stopManager;
+    }
+
+    public RouteManager getRouteManager() {
+        return routeManager;
+    }
+
+    /**
+     * Determine if this network has no stops and no routes
+     *
+     * @return true if network is empty
+     */
+    public boolean isEmpty() {
+        return stopManager.getNumStops() == 0 && routeManager.getNumRoutes() == 0;
+    }
+}
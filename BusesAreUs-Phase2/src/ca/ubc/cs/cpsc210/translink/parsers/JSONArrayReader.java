@@ -0,0 +1,156 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the elements of a JSON array of objects one at a time from a character stream, so that
+ * only the element currently being parsed is held in memory rather than the whole array.
+ * <p>
+ * The stream is scanned here just far enough to find where each element ends, and the text of the element
+ * is then parsed with the JSONObject(String) constructor.  The org.json classes built into Android cannot
+ * read from a stream themselves, and are used in place of any copy packaged with the application.
+ */
+class JSONArrayReader {
+    private Reader reader;
+    // character read but not yet used, or -2 if there is none
+    private int pushedBack = -2;
+    private StringBuilder element = new StringBuilder();
+    private int index;
+    private boolean done;
+
+    /**
+     * Constructs a reader for the JSON array at the start of the given character stream
+     *
+     * @param reader stream of JSON text
+     * @throws JSONException when JSON text does not begin with an array
+     */
+    JSONArrayReader(Reader reader) throws JSONException {
+        this.reader = reader;
+        index = 0;
+        if (nextClean() != '[') {
+            throw new JSONException("A JSONArray text must start with '['");
+        }
+        int c = nextClean();
+        if (c == ']') {
+            done = true;
+        } else {
+            pushedBack = c;
+        }
+    }
+
+    /**
+     * Read the next element of the array
+     *
+     * @return the next element of the array, or null if there are no more elements
+     * @throws JSONException when:
+     * <ul>
+     *    <li>JSON text does not have expected format (JSON syntax problem)</li>
+     *    <li>the next element of the array is not an object</li>
+     * </ul>
+     */
+    JSONObject nextObject() throws JSONException {
+        if (done) {
+            return null;
+        }
+
+        int c = nextClean();
+        if (c != '{') {
+            throw new JSONException("JSONArray[" + index + "] is not a JSONObject.");
+        }
+        element.setLength(0);
+        readObjectText(c);
+        JSONObject value = new JSONObject(element.toString());
+        index++;
+
+        switch (nextClean()) {
+            case ',':
+                break;
+            case ']':
+                done = true;
+                break;
+            default:
+                throw new JSONException("Expected a ',' or ']' after JSONArray[" + (index - 1) + "]");
+        }
+
+        return value;
+    }
+
+    /**
+     * Copy the text of an object, from its opening brace c to the matching closing brace, into element.
+     * Braces and brackets inside strings are skipped; anything else wrong with the text is left for
+     * JSONObject to report.
+     */
+    private void readObjectText(int c) throws JSONException {
+        int depth = 0;
+        while (true) {
+            if (c == -1) {
+                throw new JSONException("Unterminated JSONArray[" + index + "]");
+            }
+            element.append((char) c);
+            if (c == '"') {
+                readStringText();
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return;
+                }
+            }
+            c = next();
+        }
+    }
+
+    /**
+     * Copy the rest of a string, whose opening quote has been copied, up to and including its closing quote
+     */
+    private void readStringText() throws JSONException {
+        int c;
+        do {
+            c = next();
+            if (c == -1) {
+                throw new JSONException("Unterminated string in JSONArray[" + index + "]");
+            }
+            element.append((char) c);
+            if (c == '\\') {
+                c = next();
+                if (c == -1) {
+                    throw new JSONException("Unterminated string in JSONArray[" + index + "]");
+                }
+                element.append((char) c);
+                // an escaped quote does not end the string
+                c = 0;
+            }
+        } while (c != '"');
+    }
+
+    /**
+     * Read the next character that is not white space
+     *
+     * @return the character, or -1 at end of stream
+     */
+    private int nextClean() throws JSONException {
+        int c;
+        do {
+            c = next();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+
+    private int next() throws JSONException {
+        if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            throw new JSONException("Error reading JSON text: " + e.getMessage());
+        }
+    }
+}
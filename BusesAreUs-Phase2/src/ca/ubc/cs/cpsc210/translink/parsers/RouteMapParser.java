@@ -1,52 +1,132 @@
 package ca.ubc.cs.cpsc210.translink.parsers;
 
+import ca.ubc.cs.cpsc210.translink.model.PathSource;
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
 import ca.ubc.cs.cpsc210.translink.model.Route;
-import ca.ubc.cs.cpsc210.translink.model.RouteManager;
 import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
-import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
-import ca.ubc.cs.cpsc210.translink.util.LatLon;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Parser for routes stored in a compact format in a txt file
  */
 public class RouteMapParser {
+    // numbers with at most this many digits fit exactly in the 53 bit significand of a double
+    private static final int MAX_EXACT_DIGITS = 15;
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
     private String fileName;
+    private TransitNetwork network;
+    // number of lines found so far that name a route pattern but are not in the expected format
+    private int malformedLines;
 
+    /**
+     * Construct a parser that adds route maps to the routes of the current transit network
+     *
+     * @param fileName name of the route map file
+     */
     public RouteMapParser(String fileName) {
+        this(fileName, TransitNetwork.current());
+    }
+
+    /**
+     * Construct a parser that adds route maps to the routes of the given transit network
+     *
+     * @param fileName name of the route map file
+     * @param network  network to whose routes the route maps are added
+     */
+    public RouteMapParser(String fileName, TransitNetwork network) {
         this.fileName = fileName;
+        this.network = network;
     }
 
     /**
-     * Parse the route map txt file
+     * Parse the route map txt file.  The file is read as bytes (memory mapped where possible) and
+     * parsed in a single pass without creating a String for each line or coordinate.
      */
     public void parse() {
-        DataProvider dataProvider = new FileDataProvider(fileName);
+        FileDataProvider dataProvider = new FileDataProvider(fileName);
         try {
-            String dataAsString = dataProvider.dataSourceToString();
-            if (!dataAsString.equals("")) {
-                parseLines(dataAsString);
-            }
+            parseBuffer(dataProvider.dataSourceToByteBuffer());
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Parse each line of data in source string
+     * Index the route map txt file without parsing any coordinates.  Each route pattern named in the file is
+     * given a path source that records where its line is in the (memory mapped) file, and its coordinates
+     * are parsed the first time its path is needed.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public void index() throws IOException {
+        FileDataProvider dataProvider = new FileDataProvider(fileName);
+        indexBuffer(dataProvider.dataSourceToByteBuffer());
+    }
+
+    /**
+     * Index each line of data in source buffer, from its position to its limit
+     *
+     * @param buffer source data, which must not change while any path indexed in it may still be loaded
+     */
+    private void indexBuffer(ByteBuffer buffer) {
+        int posn = buffer.position();
+        int limit = buffer.limit();
+        while (posn < limit) {
+            int endposn = indexOf(buffer, '\n', posn, limit);
+            if (endposn < 0) {
+                endposn = limit;
+            }
+            indexOnePattern(buffer, posn, endposn);
+            posn = endposn + 1;
+        }
+    }
+
+    /**
+     * Parse the route number and pattern name from one line of data, and give that route pattern a path
+     * source from which the rest of the line is parsed on demand.
      *
-     * @param dataAsString source string
-     */
-    private void parseLines(String dataAsString) {
-        int posn = 0;
-        while (posn < dataAsString.length()) {
-            int endposn = dataAsString.indexOf('\n', posn);
-            String line = dataAsString.substring(posn, endposn);
-            parseOnePattern(line);
+     * @param buffer source data
+     * @param posn   position in buffer of the start of the line representing the route pattern
+     * @param end    position in buffer of the end of the line (exclusive)
+     */
+    private void indexOnePattern(ByteBuffer buffer, int posn, int end) {
+        int semi = patternHeaderEnd(buffer, posn, end);
+        if (semi < 0) {
+            return;
+        }
+
+        int dash = indexOf(buffer, '-', posn + 1, end);
+        String routeNumber = asciiString(buffer, posn + 1, dash);
+        String patternName = asciiString(buffer, dash + 1, semi);
+
+        Route r = network.getRouteManager().getRouteWithNumber(routeNumber);
+        r.getPattern(patternName).setPathSource(new MappedPathSource(buffer, semi + 1, end));
+    }
+
+    /**
+     * Parse each line of data in source buffer, from its position to its limit
+     *
+     * @param buffer source data
+     */
+    private void parseBuffer(ByteBuffer buffer) {
+        int posn = buffer.position();
+        int limit = buffer.limit();
+        while (posn < limit) {
+            int endposn = indexOf(buffer, '\n', posn, limit);
+            if (endposn < 0) {
+                endposn = limit;
+            }
+            parseOnePattern(buffer, posn, endposn);
             posn = endposn + 1;
         }
     }
@@ -54,69 +134,175 @@ public class RouteMapParser {
     /**
      * Parse one route pattern, adding it to the route that is named within it.
      *
-     * @param str string representing one route pattern (single line of data from source file)
-     *            <p>
-     *            Each line begins with a capital N, which is not part of the route number, followed by the
-     *            bus route number, a dash, the pattern name, a semicolon, and a series of 0 or more real
-     *            numbers corresponding to the latitude and longitude (in that order) of a point in the pattern,
-     *            separated by semicolons. The 'N' that marks the beginning of the line is not part of the bus
-     *            route number.
-     */
-    private void parseOnePattern(String str) {
-        String routeNumber;
-        String patternName;
-        int posn = 1;  // skip the leading 'N'
-        int end;
-
-        end = str.indexOf('-', posn);
-        routeNumber = str.substring(posn, end);
-        posn = end + 1;
-
-        end = str.indexOf(';', posn);
-        patternName = str.substring(posn, end);
-        posn = end + 1;
-
-        List<LatLon> elements = parseElements(str, posn);
+     * @param buffer source data
+     * @param posn   position in buffer of the start of the line representing the route pattern
+     * @param end    position in buffer of the end of the line (exclusive)
+     *               <p>
+     *               Each line begins with a capital N, which is not part of the route number, followed by the
+     *               bus route number, a dash, the pattern name, a semicolon, and a series of 0 or more real
+     *               numbers corresponding to the latitude and longitude (in that order) of a point in the pattern,
+     *               separated by semicolons. The 'N' that marks the beginning of the line is not part of the bus
+     *               route number.
+     */
+    private void parseOnePattern(ByteBuffer buffer, int posn, int end) {
+        int semi = patternHeaderEnd(buffer, posn, end);
+        if (semi < 0) {
+            return;
+        }
+
+        int dash = indexOf(buffer, '-', posn + 1, end);
+        String routeNumber = asciiString(buffer, posn + 1, dash);
+        String patternName = asciiString(buffer, dash + 1, semi);
+
+        PatternPath elements;
+        try {
+            elements = parseElements(buffer, semi + 1, end);
+        } catch (NumberFormatException e) {
+            malformedLines++;
+            return;
+        }
         storeRouteMap(routeNumber, patternName, elements);
     }
 
     /**
-     * Parse Lat/Lon pairs from string
+     * Find the semicolon that ends the route number and pattern name at the start of a line
+     *
+     * @param buffer source data
+     * @param posn   position in buffer of the start of the line
+     * @param end    position in buffer of the end of the line (exclusive)
+     * @return position of the semicolon, or -1 if line is blank or malformed
+     */
+    private int patternHeaderEnd(ByteBuffer buffer, int posn, int end) {
+        if (end - posn < 1 || buffer.get(posn) != 'N') {
+            return -1;  // blank or malformed line
+        }
+
+        int dash = indexOf(buffer, '-', posn + 1, end);
+        int semi = dash < 0 ? -1 : indexOf(buffer, ';', dash + 1, end);
+        if (semi < 0) {
+            malformedLines++;
+        }
+        return semi;
+    }
+
+    /**
+     * Get the number of lines skipped by parse or index because they start like a route pattern but are
+     * not in the expected format
      *
-     * @param str  string representing one route pattern
-     * @param posn posn in string at which to start parsing lat/lon pairs
-     * @return list of LatLon objects parsed from string
+     * @return number of malformed lines found so far
      */
-    private List<LatLon> parseElements(String str, int posn) {
-        List<LatLon> elements = new ArrayList<>();
-        int end;
+    public int getMalformedLineCount() {
+        return malformedLines;
+    }
 
-        while (posn < str.length()) {
-            end = str.indexOf(';', posn);
-            String latStr = str.substring(posn, end);
-            posn = end + 1;
+    /**
+     * Parse Lat/Lon pairs from buffer
+     *
+     * @param buffer source data
+     * @param posn   posn in buffer at which to start parsing lat/lon pairs
+     * @param end    position in buffer of the end of the line (exclusive)
+     * @return path made up of the coordinates parsed from buffer
+     * @throws NumberFormatException if a coordinate is empty or not a number
+     */
+    private static PatternPath parseElements(ByteBuffer buffer, int posn, int end) {
+        double[] coords = new double[count(buffer, ';', posn, end) & ~1];
+        int n = 0;
 
-            end = str.indexOf(';', posn);
-            String lonStr = str.substring(posn, end);
-            posn = end + 1;
+        while (posn < end) {
+            int latEnd = indexOf(buffer, ';', posn, end);
+            int lonEnd = latEnd < 0 ? -1 : indexOf(buffer, ';', latEnd + 1, end);
+            if (lonEnd < 0) {
+                break;  // incomplete pair at end of line
+            }
 
-            elements.add(parseLatLon(latStr, lonStr));
+            coords[n++] = parseDouble(buffer, posn, latEnd);
+            coords[n++] = parseDouble(buffer, latEnd + 1, lonEnd);
+            posn = lonEnd + 1;
         }
 
-        return elements;
+        return new PatternPath(n == coords.length ? coords : Arrays.copyOf(coords, n));
     }
 
     /**
-     * Parse LatLon object from latitude and longitude (as strings)
+     * Parse a decimal number from the bytes in buffer between start and end.  Plain decimals with few
+     * enough digits (all of the data in the route map file) are converted directly from the digits,
+     * which gives exactly the same result as Double.parseDouble; anything else falls back to it.
      *
-     * @param latStr string representing latitude
-     * @param lonStr string representing longitude
-     * @return LatLon object
+     * @param buffer source data
+     * @param start  position of first character of number
+     * @param end    position after last character of number
+     * @return the number
+     * @throws NumberFormatException if the bytes do not represent a number
+     */
+    private static double parseDouble(ByteBuffer buffer, int start, int end) {
+        int posn = start;
+        boolean negative = false;
+        if (posn < end && (buffer.get(posn) == '-' || buffer.get(posn) == '+')) {
+            negative = buffer.get(posn) == '-';
+            posn++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; posn < end; posn++) {
+            byte b = buffer.get(posn);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return Double.parseDouble(asciiString(buffer, start, end));
+            }
+        }
+
+        if (digits == 0 || digits > MAX_EXACT_DIGITS || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(asciiString(buffer, start, end));
+        }
+
+        // both operands are exact, so the quotient is correctly rounded, just as Double.parseDouble would be
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Find position of first occurrence of ch in buffer between posn and end, or -1 if it does not occur
      */
-    private LatLon parseLatLon(String latStr, String lonStr) {
-        double lat = Double.parseDouble(latStr);
-        double lon = Double.parseDouble(lonStr);
-        return new LatLon(lat, lon);
+    private static int indexOf(ByteBuffer buffer, char ch, int posn, int end) {
+        for (int i = posn; i < end; i++) {
+            if (buffer.get(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Count occurrences of ch in buffer between posn and end
+     */
+    private static int count(ByteBuffer buffer, char ch, int posn, int end) {
+        int n = 0;
+        for (int i = posn; i < end; i++) {
+            if (buffer.get(i) == ch) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Make a string from the (ASCII) bytes in buffer between start and end
+     */
+    private static String asciiString(ByteBuffer buffer, int start, int end) {
+        char[] chars = new char[end - start];
+        for (int i = start; i < end; i++) {
+            chars[i - start] = (char) (buffer.get(i) & 0xff);
+        }
+        return new String(chars);
     }
 
     /**
@@ -126,16 +312,37 @@ public class RouteMapParser {
      *
      * @param routeNumber the number of the route
      * @param patternName the name of the pattern
-     * @param elements    the coordinate list of the pattern
+     * @param elements    the path of the pattern
      */
-    private void storeRouteMap(String routeNumber, String patternName, List<LatLon> elements) {
-        Route r = RouteManager.getInstance().getRouteWithNumber(routeNumber);
+    private void storeRouteMap(String routeNumber, String patternName, PatternPath elements) {
+        Route r = network.getRouteManager().getRouteWithNumber(routeNumber);
         RoutePattern rp = r.getPattern(patternName);
-        if (rp == null) {
-            // should never get here
-            System.out.println("Can't store routeMap " + patternName + " in route " + r.getNumber());
-        } else {
-            rp.setPath(elements);
+        rp.setPath(elements);
+    }
+
+    /**
+     * Source of a route pattern path that parses the coordinates from its line of the route map file
+     * when the path is needed.  A line with a coordinate that is not a number has an empty path, just as
+     * parse skips it.
+     */
+    private static class MappedPathSource implements PathSource {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        MappedPathSource(ByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public PatternPath loadPath() {
+            try {
+                return parseElements(buffer, start, end);
+            } catch (NumberFormatException e) {
+                return PatternPath.EMPTY;
+            }
         }
     }
 }
@@ -2,47 +2,71 @@ package ca.ubc.cs.cpsc210.translink.parsers;
 
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
-import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.Reader;
 
 /**
  * Parse route information in JSON format.
  */
 public class RouteParser {
     private String filename;
+    private TransitNetwork network;
 
+    /**
+     * Construct a parser that adds routes to the current transit network
+     *
+     * @param filename name of the routes file
+     */
     public RouteParser(String filename) {
+        this(filename, TransitNetwork.current());
+    }
+
+    /**
+     * Construct a parser that adds routes to the given transit network
+     *
+     * @param filename name of the routes file
+     * @param network  network to which routes and their patterns are added
+     */
+    public RouteParser(String filename, TransitNetwork network) {
         this.filename = filename;
+        this.network = network;
     }
 
     /**
-     * Parse route data from the file and add all routes to the route manager.
+     * Parse route data from the file and add all routes to the route manager.  The file is parsed as it
+     * is read, one route at a time, so the whole document is never held in memory.
      */
     public void parse() throws IOException, RouteDataMissingException, JSONException {
-        DataProvider dataProvider = new FileDataProvider(filename);
+        FileDataProvider dataProvider = new FileDataProvider(filename);
 
-        parseRoutes(dataProvider.dataSourceToString());
+        Reader reader = dataProvider.dataSourceToReader();
+        try {
+            parseRoutes(reader);
+        } finally {
+            reader.close();
+        }
     }
 
     /**
-     * Parse route information from JSON response produced by Translink.
+     * Parse route information from a stream of JSON produced by Translink, one route at a time.
      * Stores all routes and route patterns found in the RouteManager.  A pattern that
      * is missing any one of PatternNo, Destination or Direction is silently ignored
      * and not added to the route.
      *
-     * @param jsonResponse string encoding JSON data to be parsed
+     * @param jsonReader stream of JSON data to be parsed
      * @throws JSONException when:
      * <ul>
      *    <li>JSON data does not have expected format (JSON syntax problem)</li>
      *    <li>JSON data is not an array</li>
      * </ul>
-     * If a JSONException is thrown, no stops should be added to the stop manager.
+     * Routes read before the problem was found will already have been added to the route manager.
      * @throws RouteDataMissingException when
      * <ul>
      *    <li>JSON data is missing RouteNo, Name, or Patterns element for any route</li>
@@ -50,13 +74,13 @@ public class RouteParser {
      * </ul>
      * If a RouteDataMissingException is thrown, all correct routes are first added to the route manager.
      */
-    private void parseRoutes(String jsonResponse)
+    private void parseRoutes(Reader jsonReader)
             throws JSONException, RouteDataMissingException {
-        JSONArray routes = new JSONArray(jsonResponse);
+        JSONArrayReader routes = new JSONArrayReader(jsonReader);
 
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < routes.length(); ++i) {
-            JSONObject oneroute = routes.getJSONObject(i);
+        JSONObject oneroute;
+        while ((oneroute = routes.nextObject()) != null) {
             parseRoute(sb, oneroute);
         }
 
@@ -73,7 +97,7 @@ public class RouteParser {
      * @param routeObject   JSON object representing route to be parsed
      */
     private void parseRoute(StringBuilder stringBuilder, JSONObject routeObject) {
-        RouteManager routeManager = RouteManager.getInstance();
+        RouteManager routeManager = network.getRouteManager();
         String routeNumber = "";
         try {
             routeNumber = routeObject.getString("RouteNo");
@@ -1,19 +1,17 @@
 package ca.ubc.cs.cpsc210.translink.parsers;
 
 import ca.ubc.cs.cpsc210.translink.model.Route;
-import ca.ubc.cs.cpsc210.translink.model.RouteManager;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
-import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
-import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.Reader;
 
 
 /**
@@ -22,30 +20,54 @@ import java.io.IOException;
 public class StopParser {
 
     private String filename;
+    private TransitNetwork network;
 
+    /**
+     * Construct a parser that adds stops to the current transit network
+     *
+     * @param filename name of the stops file
+     */
     public StopParser(String filename) {
+        this(filename, TransitNetwork.current());
+    }
+
+    /**
+     * Construct a parser that adds stops to the given transit network
+     *
+     * @param filename name of the stops file
+     * @param network  network to which stops and their routes are added
+     */
+    public StopParser(String filename, TransitNetwork network) {
         this.filename = filename;
+        this.network = network;
     }
 
     /**
-     * Parse stop data from the file and add all stops to stop manager.
+     * Parse stop data from the file and add all stops to stop manager.  The file is parsed as it is read,
+     * one stop at a time, so the whole document is never held in memory.
      */
     public void parse() throws IOException, StopDataMissingException, JSONException {
-        DataProvider dataProvider = new FileDataProvider(filename);
+        FileDataProvider dataProvider = new FileDataProvider(filename);
 
-        parseStops(dataProvider.dataSourceToString());
+        Reader reader = dataProvider.dataSourceToReader();
+        try {
+            parseStops(reader);
+        } finally {
+            reader.close();
+        }
     }
 
     /**
-     * Parse stop information from JSON response produced by Translink.
+     * Parse stop information from a stream of JSON produced by Translink, one stop at a time.
      * Stores all stops and routes found in the StopManager and RouteManager.
      *
-     * @param jsonResponse string encoding JSON data to be parsed
+     * @param jsonReader stream of JSON data to be parsed
      * @throws JSONException when:
      * <ul>
      *    <li>JSON data does not have expected format (JSON syntax problem)</li>
      *    <li>JSON data is not an array</li>
      * </ul>
+     * Stops read before the problem was found will already have been added to the stop manager.
      * @throws StopDataMissingException when
      * <ul>
      *    <li> JSON data is missing Name, StopNo, Routes or location (Latitude or Longitude)
@@ -54,13 +76,13 @@ public class StopParser {
      * If a StopDataMissingException is thrown, all stops for which all required data is available
      *                                  are first added to the stop manager.
      */
-    private void parseStops(String jsonResponse)
+    private void parseStops(Reader jsonReader)
             throws JSONException, StopDataMissingException {
-        JSONArray stops = new JSONArray(jsonResponse);
+        JSONArrayReader stops = new JSONArrayReader(jsonReader);
         StringBuilder sb = new StringBuilder();
 
-        for (int i = 0; i < stops.length(); ++i) {
-            JSONObject onestop = stops.getJSONObject(i);
+        JSONObject onestop;
+        while ((onestop = stops.nextObject()) != null) {
             parseStop(sb, onestop);
         }
 
@@ -101,9 +123,9 @@ public class StopParser {
      */
     private void addRoutesToStop(int stopNo, String stopName, double stopLat, double stopLon, String routes) {
         String[] routearray = routes.split(", *");
-        Stop s = StopManager.getInstance().getStopWithNumber(stopNo, stopName, new LatLon(stopLat, stopLon));
+        Stop s = network.getStopManager().getStopWithNumber(stopNo, stopName, new LatLon(stopLat, stopLon));
         for (String route : routearray) {
-            Route r = RouteManager.getInstance().getRouteWithNumber(route);
+            Route r = network.getRouteManager().getRouteWithNumber(route);
             s.addRoute(r);
         }
     }
@@ -1,6 +1,8 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * Common functionality for file data providers
@@ -15,35 +17,78 @@ public abstract class AbstractFileDataProvider implements DataProvider {
      * @throws IOException when error occurs reading data from file
      */
     protected String readSource(InputStream is) throws IOException {
-        BufferedReader br = new BufferedReader(new InputStreamReader(is));
-        StringBuilder sb = new StringBuilder();
-        String line;
+        Reader reader = new InputStreamReader(is, "UTF-8");
+        StringBuilder sb = new StringBuilder(Math.max(is.available(), 8192));
+        char[] buff = new char[8192];
+        int nread;
 
-        while ((line = br.readLine()) != null) {
-            sb.append(line);
-            sb.append("\n");
+        try {
+            while ((nread = reader.read(buff)) != -1) {
+                sb.append(buff, 0, nread);
+            }
+        } finally {
+            reader.close();
         }
 
-        br.close();
-
         return sb.toString();
     }
 
-    static byte[] readSourceRaw(InputStream is) {
+    /**
+     * Read all source data from input stream into a byte buffer
+     *
+     * @param is input stream connected to source data
+     * @return buffer whose remaining bytes are the source data
+     * @throws IOException when error occurs reading data from file
+     */
+    protected static ByteBuffer readSourceBuffer(InputStream is) throws IOException {
+        byte[] bytes = new byte[Math.max(is.available(), 8192)];
+        int length = 0;
+        int nread;
+
         try {
-            final int maxlen = 4 * 1024 * 1024;
-
-            byte[] bytes = new byte[maxlen];
-            int nread = is.read(bytes, 0, maxlen);
-            byte[] xbytes = new byte[1];
-            int xnread = is.read(xbytes, 0, 1);
-            byte[] ans = new byte[nread];
-            System.arraycopy(bytes, 0, ans, 0, nread);
-            return ans;
-        } catch (IOException e) {
-            e.printStackTrace();
+            while ((nread = is.read(bytes, length, bytes.length - length)) != -1) {
+                length += nread;
+                if (length == bytes.length) {
+                    // only grow the buffer if the source really is larger than the estimate
+                    int next = is.read();
+                    if (next == -1) {
+                        break;
+                    }
+                    byte[] larger = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, larger, 0, length);
+                    bytes = larger;
+                    bytes[length++] = (byte) next;
+                }
+            }
+        } finally {
+            is.close();
+        }
+
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Read all source data from input stream into an array of exactly its length
+     *
+     * @param is input stream connected to source data
+     * @return source data
+     * @throws IOException when error occurs reading data from file
+     */
+    protected static byte[] readSourceRaw(InputStream is) throws IOException {
+        ByteBuffer buffer = readSourceBuffer(is);
+        byte[] bytes = buffer.array();
+        if (buffer.remaining() == bytes.length) {
+            return bytes;
         }
-        return null;
+        return Arrays.copyOf(bytes, buffer.remaining());
     }
 
+    /**
+     * Read data source as a read-only byte buffer, for parsers that consume bytes directly.  Where the
+     * source can be memory mapped no copy of it is made on the heap.
+     *
+     * @return buffer whose remaining bytes are the contents of the data source
+     * @throws IOException when error occurs reading from source
+     */
+    public abstract ByteBuffer dataSourceToByteBuffer() throws IOException;
 }
@@ -1,73 +1,117 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
 
 /**
- * Abstract Http data provider
+ * Abstract Http data provider.  Connections are not disconnected after use: each response is read to the
+ * end and its stream closed, which returns the connection to the keep-alive pool configured by
+ * HttpConnectionPool for reuse by the next request.
+ *
+ * Concurrent requests for the same URL (same endpoint and stop) are coalesced: the first caller reads
+ * from the network and the others wait for and share its result.
  */
 public abstract class AbstractHttpDataProvider implements DataProvider {
-    protected HttpURLConnection conn;
-
-    public AbstractHttpDataProvider() {
-        conn = null;
-    }
+    /**
+     * requests currently being read from the network, keyed by URL
+     */
+    private static final ConcurrentMap<String, Request> inFlight = new ConcurrentHashMap<>();
 
     @Override
     public String dataSourceToString() throws IOException {
         URL url = getUrl();
-        StringBuilder jsonResults = readData(url);
-        return jsonResults.toString();
+        Request request = new Request();
+        Request pending = inFlight.putIfAbsent(url.toString(), request);
+        if (pending != null) {
+            return pending.awaitResult();
+        }
+
+        String result = "Error";
+        try {
+            result = readData(url).toString();
+        } finally {
+            request.complete(result);
+            inFlight.remove(url.toString(), request);
+        }
+        return result;
     }
 
     private StringBuilder readData(URL url) {
         StringBuilder jsonResults = new StringBuilder();
         try {
-            configureConnection(url);
-            jsonResults = loadResponse();
+            HttpURLConnection conn = openConnection(url);
+            jsonResults = loadResponse(conn);
         } catch (Exception e) {
             jsonResults.append("Error");
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
         }
         return jsonResults;
     }
 
-    private void configureConnection(URL url) throws IOException {
+    private HttpURLConnection openConnection(URL url) throws IOException {
         final int HTTP_OK = 200;           // HTTP success code
         final int CONNECT_TIMEOUT = 2000;  // timeout in ms
         final int READ_TIMEOUT = 3000;     // timeout in ms
 
-        conn = (HttpURLConnection) url.openConnection();
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
         conn.setConnectTimeout(CONNECT_TIMEOUT);
         conn.setRequestProperty("Accept", "application/JSON");
         conn.setReadTimeout(READ_TIMEOUT);
         conn.connect();
         int response = conn.getResponseCode();
         if (response != HTTP_OK) {
+            // read the error body so the connection can still be reused
+            discard(conn.getErrorStream());
             throw new IOException("HTTP response code:" + response + "- failed to obtain data");
         }
+        return conn;
     }
 
-    private StringBuilder loadResponse() throws IOException {
+    private StringBuilder loadResponse(HttpURLConnection conn) throws IOException {
         StringBuilder jsonResults = new StringBuilder();
         InputStreamReader in = new InputStreamReader(conn.getInputStream());
 
         // Load the results into a StringBuilder
-        int read;
-        char[] buff = new char[1024];
-        while ((read = in.read(buff)) != -1) {
-            jsonResults.append(buff, 0, read);
+        try {
+            int read;
+            char[] buff = new char[1024];
+            while ((read = in.read(buff)) != -1) {
+                jsonResults.append(buff, 0, read);
+            }
+        } finally {
+            in.close();
         }
 
         return jsonResults;
     }
 
+    /**
+     * Read stream to the end and close it
+     *
+     * @param in the stream (may be null)
+     */
+    private static void discard(InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buff = new byte[1024];
+            while (in.read(buff) != -1) {
+                // discard
+            }
+            in.close();
+        } catch (IOException e) {
+            // connection will not be reused
+        }
+    }
+
     /**
      * Get URL of Http data provider
      *
@@ -75,4 +119,28 @@ public abstract class AbstractHttpDataProvider implements DataProvider {
      * @throws MalformedURLException when URL is malformed
      */
     protected abstract URL getUrl() throws MalformedURLException;
+
+    /**
+     * A request being read from the network, whose result is shared with every caller that asks for
+     * the same URL before it completes
+     */
+    private static class Request {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String result;
+
+        void complete(String result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        String awaitResult() throws IOException {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for shared request");
+            }
+            return result;
+        }
+    }
 }
@@ -1,10 +1,16 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.Resources;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * Data provider where data source is a file in Android environment
@@ -33,4 +39,46 @@ public class AndroidFileDataProvider extends AbstractFileDataProvider {
                 resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName()));
         return readSourceRaw(is);
     }
+
+    /**
+     * Open data source as a stream of characters, so that it can be parsed without first reading all of it.
+     * The caller is responsible for closing the reader.
+     *
+     * @return reader connected to the data source
+     * @throws IOException when error occurs opening source
+     */
+    public Reader dataSourceToReader() throws IOException {
+        Resources resources = cxt.getResources();
+        InputStream is = resources.openRawResource(
+                resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName()));
+        return new BufferedReader(new InputStreamReader(is, "UTF-8"));
+    }
+
+    /**
+     * Read data source as a read-only byte buffer.  Where the resource is stored uncompressed in the
+     * application package it is memory mapped, so no copy of it is made on the heap; otherwise it is
+     * read into a heap buffer.
+     *
+     * @return buffer whose remaining bytes are the contents of the data source
+     * @throws IOException when error occurs reading from source
+     */
+    @Override
+    public ByteBuffer dataSourceToByteBuffer() throws IOException {
+        Resources resources = cxt.getResources();
+        int id = resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName());
+        try {
+            AssetFileDescriptor afd = resources.openRawResourceFd(id);
+            if (afd != null) {
+                try {
+                    FileChannel channel = afd.createInputStream().getChannel();
+                    return channel.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+                } finally {
+                    afd.close();
+                }
+            }
+        } catch (Resources.NotFoundException e) {
+            // resource is compressed in the package and cannot be mapped; fall through and read it instead
+        }
+        return readSourceBuffer(resources.openRawResource(id));
+    }
 }
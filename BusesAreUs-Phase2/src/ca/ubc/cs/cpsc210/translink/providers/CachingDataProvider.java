@@ -0,0 +1,43 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.IOException;
+
+/**
+ * Data provider that serves responses for a stop from a ResponseCache, reading from another data
+ * provider only when no valid response is cached.  Error responses are not cached.
+ */
+public class CachingDataProvider implements DataProvider {
+    private final int stopNumber;
+    private final DataProvider source;
+    private final ResponseCache cache;
+
+    /**
+     * Constructor
+     *
+     * @param stopNumber number of the stop whose data the source provides
+     * @param source     the data provider read on a cache miss
+     * @param cache      cache of responses for the source's endpoint
+     */
+    public CachingDataProvider(int stopNumber, DataProvider source, ResponseCache cache) {
+        this.stopNumber = stopNumber;
+        this.source = source;
+        this.cache = cache;
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        String response = cache.get(stopNumber);
+        if (response == null) {
+            response = source.dataSourceToString();
+            if (response != null && !response.equals("Error")) {
+                cache.put(stopNumber, response);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public byte[] dataSourceToBytes() throws IOException {
+        return source.dataSourceToBytes();
+    }
+}
@@ -0,0 +1,65 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Data provider where data source is a file in the file system, read through a FileChannel.  The file is
+ * read in bulk into a buffer of exactly its size, or memory mapped by dataSourceToByteBuffer so that
+ * parsers that consume bytes directly read it without any copy on the heap.
+ */
+public class ChannelFileDataProvider extends AbstractFileDataProvider {
+    private File file;
+
+    public ChannelFileDataProvider(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public String dataSourceToString() throws IOException {
+        return new String(dataSourceToBytes(), "UTF-8");
+    }
+
+    @Override
+    public byte[] dataSourceToBytes() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to read into memory: " + file);
+            }
+
+            byte[] bytes = new byte[(int) size];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException("File truncated while reading: " + file);
+                }
+            }
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Memory map the file.  The mapping stays valid after the file is closed.
+     *
+     * @return read-only buffer whose remaining bytes are the contents of the file
+     * @throws IOException when error occurs reading from source
+     */
+    @Override
+    public ByteBuffer dataSourceToByteBuffer() throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+    }
+}
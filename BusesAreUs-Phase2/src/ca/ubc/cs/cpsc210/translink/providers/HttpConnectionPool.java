@@ -0,0 +1,47 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Settings for the pool of keep-alive connections that HttpURLConnection keeps for the http data providers.
+ * A connection goes back to the pool when its response has been read to the end and its stream closed,
+ * so the next request to the same host skips the TCP (and DNS) handshake.
+ *
+ * The pool belongs to the platform and is shared by the whole process.  It reads these settings, which are
+ * system properties, when it is first used, so they are set once, before the first request is made; an
+ * activity that is recreated must not set them again.
+ */
+public class HttpConnectionPool {
+    /**
+     * default largest number of idle connections kept in the pool
+     */
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 4;
+    /**
+     * default time after which an idle connection in the pool is closed, in ms
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    private static final AtomicBoolean configured = new AtomicBoolean();
+
+    /**
+     * Configure the connection pool for the whole process.  Only the first call has any effect; later calls
+     * leave the settings as they are.
+     *
+     * @param maxIdleConnections largest number of idle connections kept in the pool
+     * @param idleTimeout        time after which an idle connection is closed, in ms
+     * @return true if the pool was configured by this call, false if it had already been configured
+     * @throws IllegalArgumentException if maxIdleConnections is not positive or idleTimeout is negative
+     */
+    public static boolean configure(int maxIdleConnections, long idleTimeout) {
+        if (maxIdleConnections <= 0 || idleTimeout < 0) {
+            throw new IllegalArgumentException("Invalid connection pool settings");
+        }
+        if (!configured.compareAndSet(false, true)) {
+            return false;
+        }
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(maxIdleConnections));
+        System.setProperty("http.keepAliveDuration", Long.toString(idleTimeout));
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+package ca.ubc.cs.cpsc210.translink.providers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of responses read from a data provider, keyed by stop number.  Entries expire once
+ * they are older than the cache's time-to-live.  When the cache holds more than its maximum number of
+ * entries or bytes, least recently used entries are evicted first.
+ *
+ * Safe for use from more than one thread.
+ */
+public class ResponseCache {
+    /**
+     * Source of the current time, in ms, by which entries are aged
+     */
+    public interface Clock {
+
+        /**
+         * Get the current time
+         *
+         * @return the current time in ms, from any fixed starting point
+         */
+        long now();
+    }
+
+    /**
+     * clock unaffected by changes to the wall clock
+     */
+    private static final Clock MONOTONIC_CLOCK = new Clock() {
+        @Override
+        public long now() {
+            return System.nanoTime() / 1000000;
+        }
+    };
+
+    private final Clock clock;
+    private final long timeToLive;
+    private final int maxEntries;
+    private final long maxBytes;
+    /**
+     * cached entries, least recently used first
+     */
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor
+     *
+     * @param timeToLive time for which a response stays valid, in ms
+     * @param maxEntries largest number of responses held
+     * @param maxBytes   largest total size of responses held, in bytes
+     * @throws IllegalArgumentException if any argument is not positive
+     */
+    public ResponseCache(long timeToLive, int maxEntries, long maxBytes) {
+        this(timeToLive, maxEntries, maxBytes, MONOTONIC_CLOCK);
+    }
+
+    /**
+     * Constructor for a cache whose entries are aged by the given clock
+     *
+     * @param timeToLive time for which a response stays valid, in ms
+     * @param maxEntries largest number of responses held
+     * @param maxBytes   largest total size of responses held, in bytes
+     * @param clock      source of the current time
+     * @throws IllegalArgumentException if any number is not positive
+     */
+    public ResponseCache(long timeToLive, int maxEntries, long maxBytes, Clock clock) {
+        if (timeToLive <= 0 || maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid cache settings");
+        }
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the response cached for a stop
+     *
+     * @param stopNumber number of the stop
+     * @return the cached response, or null if there is none or it has expired
+     */
+    public synchronized String get(int stopNumber) {
+        Entry entry = entries.get(stopNumber);
+        if (entry != null && clock.now() - entry.created >= timeToLive) {
+            removeEntry(stopNumber);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.response;
+    }
+
+    /**
+     * Cache the response for a stop, replacing any response already cached for it.  A response larger
+     * than the cache itself is not cached.
+     *
+     * @param stopNumber number of the stop
+     * @param response   the response
+     */
+    public synchronized void put(int stopNumber, String response) {
+        removeEntry(stopNumber);
+        Entry entry = new Entry(response, clock.now());
+        if (entry.size > maxBytes) {
+            return;
+        }
+        entries.put(stopNumber, entry);
+        bytes += entry.size;
+        evict();
+    }
+
+    /**
+     * Remove the response cached for a stop, if any
+     *
+     * @param stopNumber number of the stop
+     */
+    public synchronized void invalidate(int stopNumber) {
+        removeEntry(stopNumber);
+    }
+
+    /**
+     * Remove all cached responses
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Remove least recently used entries until the cache is within its limits
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().size;
+            it.remove();
+        }
+    }
+
+    private void removeEntry(int stopNumber) {
+        Entry entry = entries.remove(stopNumber);
+        if (entry != null) {
+            bytes -= entry.size;
+        }
+    }
+
+    private static class Entry {
+        final String response;
+        final long created;
+        final long size;
+
+        Entry(String response, long created) {
+            this.response = response;
+            this.created = created;
+            size = 2L * response.length();   // Java strings hold two bytes per char
+        }
+    }
+}
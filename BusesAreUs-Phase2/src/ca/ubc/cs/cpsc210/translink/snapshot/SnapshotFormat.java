@@ -0,0 +1,29 @@
+package ca.ubc.cs.cpsc210.translink.snapshot;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants describing the layout of a snapshot file.
+ * <p>
+ * All values are big-endian.  A string is an int byte count followed by that many bytes of UTF-8.
+ * <pre>
+ * header:  int MAGIC, int VERSION, long source stamp
+ * stops:   int count, then for each stop:
+ *              int number, string name, byte 1 if located (0 otherwise), [double lat, double lon if located]
+ * routes:  int count, then for each route:
+ *              string number, string name,
+ *              int stop count, then int index (in the stops section) of each stop, in route order,
+ *              int pattern count, then for each pattern:
+ *                  string name, string destination, string direction,
+ *                  int point count, then double lat, double lon of each point
+ * </pre>
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x42415553;   // "BAUS"
+    static final int VERSION = 1;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final int POINT_BYTES = 16;     // double lat, double lon
+
+    private SnapshotFormat() {
+    }
+}
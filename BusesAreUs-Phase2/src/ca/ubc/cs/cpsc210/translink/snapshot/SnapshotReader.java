@@ -0,0 +1,200 @@
+package ca.ubc.cs.cpsc210.translink.snapshot;
+
+import ca.ubc.cs.cpsc210.translink.model.PathSource;
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.providers.ChannelFileDataProvider;
+import ca.ubc.cs.cpsc210.translink.snapshot.exception.SnapshotFormatException;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the stops, routes, route patterns and pattern paths in a snapshot file written by
+ * SnapshotWriter into the StopManager and RouteManager of a transit network.
+ */
+public class SnapshotReader {
+    private File file;
+    private TransitNetwork network;
+    private byte[] stringBytes = new byte[256];
+
+    /**
+     * Constructs a reader for the given snapshot file that loads it into the current transit network
+     *
+     * @param file the snapshot file
+     */
+    public SnapshotReader(File file) {
+        this(file, TransitNetwork.current());
+    }
+
+    /**
+     * Constructs a reader for the given snapshot file that loads it into the given transit network
+     *
+     * @param file    the snapshot file
+     * @param network network into which the snapshot is loaded
+     */
+    public SnapshotReader(File file, TransitNetwork network) {
+        this.file = file;
+        this.network = network;
+    }
+
+    /**
+     * Load the snapshot file into the stop and route managers.  The file is memory mapped and read in one pass.
+     *
+     * @param sourceStamp value identifying the version of the source data that the snapshot must have been
+     *                    written from
+     * @throws IOException             when the file cannot be read
+     * @throws SnapshotFormatException when the file is not a snapshot, was written by a different version of the
+     *                                 snapshot format, was written from other source data, or is truncated.
+     *                                 If thrown after the header has been checked, the managers may hold
+     *                                 part of the snapshot and should be cleared.
+     */
+    public void read(long sourceStamp) throws IOException, SnapshotFormatException {
+        read(new ChannelFileDataProvider(file).dataSourceToByteBuffer(), sourceStamp);
+    }
+
+    /**
+     * Load a snapshot held in the given buffer into the stop and route managers.
+     *
+     * @param buffer      buffer whose remaining bytes are a snapshot
+     * @param sourceStamp value identifying the version of the source data that the snapshot must have been
+     *                    written from
+     * @throws SnapshotFormatException as for read(long)
+     */
+    public void read(ByteBuffer buffer, long sourceStamp) throws SnapshotFormatException {
+        try {
+            readHeader(buffer, sourceStamp);
+            List<Stop> stops = readStops(buffer);
+            readRoutes(buffer, stops);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new SnapshotFormatException("Snapshot " + file + " is truncated or corrupt");
+        }
+    }
+
+    private void readHeader(ByteBuffer buffer, long sourceStamp) throws SnapshotFormatException {
+        if (buffer.remaining() < 16 || buffer.getInt() != SnapshotFormat.MAGIC) {
+            throw new SnapshotFormatException("Not a snapshot: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != SnapshotFormat.VERSION) {
+            throw new SnapshotFormatException("Snapshot version " + version + " is not supported");
+        }
+        if (buffer.getLong() != sourceStamp) {
+            throw new SnapshotFormatException("Snapshot is out of date with respect to its source data");
+        }
+    }
+
+    /**
+     * Read all stops and add them to the stop manager
+     *
+     * @return the stops read, in the order in which they appear in the snapshot
+     */
+    private List<Stop> readStops(ByteBuffer buffer) {
+        StopManager stopManager = network.getStopManager();
+        int count = buffer.getInt();
+        List<Stop> stops = new ArrayList<>(Math.min(count, buffer.remaining()));
+
+        for (int i = 0; i < count; i++) {
+            int number = buffer.getInt();
+            String name = readString(buffer);
+            LatLon locn = null;
+            if (buffer.get() != 0) {
+                double lat = buffer.getDouble();
+                double lon = buffer.getDouble();
+                locn = new LatLon(lat, lon);
+            }
+            stops.add(stopManager.getStopWithNumber(number, name, locn));
+        }
+
+        return stops;
+    }
+
+    /**
+     * Read all routes, with their stops and patterns, and add them to the route manager
+     */
+    private void readRoutes(ByteBuffer buffer, List<Stop> stops) {
+        RouteManager routeManager = network.getRouteManager();
+        int count = buffer.getInt();
+
+        for (int i = 0; i < count; i++) {
+            String number = readString(buffer);
+            String name = readString(buffer);
+            Route route = routeManager.getRouteWithNumber(number, name);
+
+            int stopCount = buffer.getInt();
+            for (int s = 0; s < stopCount; s++) {
+                route.addStop(stops.get(buffer.getInt()));
+            }
+
+            int patternCount = buffer.getInt();
+            for (int p = 0; p < patternCount; p++) {
+                readPattern(buffer, route);
+            }
+        }
+    }
+
+    /**
+     * Read one pattern.  Its path is not decoded here: the pattern is given a path source that decodes the
+     * path from the snapshot buffer the first time it is needed.
+     */
+    private void readPattern(ByteBuffer buffer, Route route) {
+        String name = readString(buffer);
+        String destination = readString(buffer);
+        String direction = readString(buffer);
+        RoutePattern pattern = route.getPattern(name, destination, direction);
+
+        int pointCount = buffer.getInt();
+        if (pointCount < 0 || pointCount > buffer.remaining() / SnapshotFormat.POINT_BYTES) {
+            throw new BufferUnderflowException();
+        }
+        int start = buffer.position();
+        buffer.position(start + pointCount * SnapshotFormat.POINT_BYTES);
+        pattern.setPathSource(new SnapshotPathSource(buffer, start, pointCount));
+    }
+
+    private String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (length > stringBytes.length) {
+            stringBytes = new byte[length];
+        }
+        buffer.get(stringBytes, 0, length);
+        return new String(stringBytes, 0, length, SnapshotFormat.UTF8);
+    }
+
+    /**
+     * Source of a route pattern path that decodes the points from the snapshot buffer when the path is needed
+     */
+    private static class SnapshotPathSource implements PathSource {
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int pointCount;
+
+        SnapshotPathSource(ByteBuffer buffer, int start, int pointCount) {
+            this.buffer = buffer;
+            this.start = start;
+            this.pointCount = pointCount;
+        }
+
+        @Override
+        public PatternPath loadPath() {
+            double[] coords = new double[2 * pointCount];
+            ByteBuffer points = buffer.duplicate();
+            points.position(start);
+            points.asDoubleBuffer().get(coords);
+            return new PatternPath(coords);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ca.ubc.cs.cpsc210.translink.snapshot;
+
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the stops, routes, route patterns and pattern paths held by the StopManager and RouteManager
+ * of a transit network to a compact binary snapshot file that can be loaded much faster than the text data it came from.
+ */
+public class SnapshotWriter {
+    private File file;
+    private TransitNetwork network;
+
+    /**
+     * Constructs a writer that writes the current transit network to the given snapshot file
+     *
+     * @param file the snapshot file
+     */
+    public SnapshotWriter(File file) {
+        this(file, TransitNetwork.current());
+    }
+
+    /**
+     * Constructs a writer that writes the given transit network to the given snapshot file
+     *
+     * @param file    the snapshot file
+     * @param network network to be written
+     */
+    public SnapshotWriter(File file, TransitNetwork network) {
+        this.file = file;
+        this.network = network;
+    }
+
+    /**
+     * Write the current contents of the stop and route managers to the snapshot file.  The snapshot is
+     * first written to a temporary file which then replaces the snapshot file, so a partly written
+     * snapshot is never left behind.
+     *
+     * @param sourceStamp value identifying the version of the source data the managers were loaded from
+     * @throws IOException when error occurs writing the file
+     */
+    public void write(long sourceStamp) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+        try {
+            out.writeInt(SnapshotFormat.MAGIC);
+            out.writeInt(SnapshotFormat.VERSION);
+            out.writeLong(sourceStamp);
+            Map<Stop, Integer> stopIndex = writeStops(out);
+            writeRoutes(out, stopIndex);
+        } finally {
+            out.close();
+        }
+
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Unable to replace snapshot " + file);
+        }
+    }
+
+    /**
+     * Write the stops in the stop manager that have a location.  Stops without one are placeholders made
+     * for stop numbers not in the source data, and are not kept.  The network may be in use, and gaining
+     * such stops, while it is written, so the stops are copied first and the copy is written.
+     *
+     * @return map from each stop written to its index in the stops section
+     */
+    private Map<Stop, Integer> writeStops(DataOutputStream out) throws IOException {
+        List<Stop> stops = new ArrayList<>();
+        List<LatLon> locns = new ArrayList<>();
+        for (Stop stop : network.getStopManager()) {
+            LatLon locn = stop.getLocn();
+            if (locn != null) {
+                stops.add(stop);
+                locns.add(locn);
+            }
+        }
+
+        Map<Stop, Integer> stopIndex = new HashMap<>();
+        out.writeInt(stops.size());
+        for (int i = 0; i < stops.size(); i++) {
+            Stop stop = stops.get(i);
+            stopIndex.put(stop, i);
+            out.writeInt(stop.getNumber());
+            writeString(out, stop.getName());
+            out.writeByte(1);
+            out.writeDouble(locns.get(i).getLatitude());
+            out.writeDouble(locns.get(i).getLongitude());
+        }
+
+        return stopIndex;
+    }
+
+    /**
+     * Write all routes in the route manager, with their stops and patterns.  As for stops, the routes are
+     * copied before they are written, and a stop of a route that was not written to the stops section is
+     * left out of the route.
+     */
+    private void writeRoutes(DataOutputStream out, Map<Stop, Integer> stopIndex) throws IOException {
+        List<Route> routes = new ArrayList<>();
+        for (Route route : network.getRouteManager()) {
+            routes.add(route);
+        }
+
+        out.writeInt(routes.size());
+        for (Route route : routes) {
+            writeString(out, route.getNumber());
+            writeString(out, route.getName());
+
+            List<Integer> stopIndexes = new ArrayList<>();
+            for (Stop stop : route.getStops()) {
+                Integer index = stopIndex.get(stop);
+                if (index != null) {
+                    stopIndexes.add(index);
+                }
+            }
+            out.writeInt(stopIndexes.size());
+            for (int index : stopIndexes) {
+                out.writeInt(index);
+            }
+
+            List<RoutePattern> patterns = route.getPatterns();
+            out.writeInt(patterns.size());
+            for (RoutePattern pattern : patterns) {
+                writePattern(out, pattern);
+            }
+        }
+    }
+
+    private void writePattern(DataOutputStream out, RoutePattern pattern) throws IOException {
+        writeString(out, pattern.getName());
+        writeString(out, pattern.getDestination());
+        writeString(out, pattern.getDirection());
+
+        // read the path without keeping it, so writing the snapshot neither leaves every path in memory
+        // nor discards paths being drawn
+        PatternPath path = pattern.readPath();
+        out.writeInt(path.size());
+        for (int i = 0; i < path.size(); i++) {
+            out.writeDouble(path.getLatitude(i));
+            out.writeDouble(path.getLongitude(i));
+        }
+    }
+
+    private void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = (s == null ? "" : s).getBytes(SnapshotFormat.UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
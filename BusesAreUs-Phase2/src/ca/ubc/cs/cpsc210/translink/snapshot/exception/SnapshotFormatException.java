@@ -0,0 +1,15 @@
+package ca.ubc.cs.cpsc210.translink.snapshot.exception;
+
+/**
+ * Represents exception raised when a snapshot file is not in the expected format,
+ * was written by a different version of the format, or is out of date with respect to its source data.
+ */
+public class SnapshotFormatException extends Exception {
+    public SnapshotFormatException() {
+        super();
+    }
+
+    public SnapshotFormatException(String msg) {
+        super(msg);
+    }
+}
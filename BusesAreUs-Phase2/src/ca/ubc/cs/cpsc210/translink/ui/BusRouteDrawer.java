@@ -2,12 +2,13 @@ package ca.ubc.cs.cpsc210.translink.ui;
 
 import android.content.Context;
 import ca.ubc.cs.cpsc210.translink.BusesAreUs;
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.SegmentVisitor;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
 import ca.ubc.cs.cpsc210.translink.model.StopManager;
 import ca.ubc.cs.cpsc210.translink.util.Geometry;
-import ca.ubc.cs.cpsc210.translink.util.LatLon;
 import org.osmdroid.DefaultResourceProxyImpl;
 import org.osmdroid.ResourceProxy;
 import org.osmdroid.bonuspack.overlays.Polyline;
@@ -16,7 +17,10 @@ import org.osmdroid.views.MapView;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 // A bus route drawer
@@ -29,6 +33,19 @@ public class BusRouteDrawer extends MapViewOverlay {
      * overlays used to plot bus routes
      */
     private List<Polyline> busRouteOverlays;
+    /**
+     * polyline drawn for each visible run of a pattern path by the last call to plotRoutes, reused if the
+     * same run is visible next time
+     */
+    private Map<VisibleRun, Polyline> runPolylines;
+    /**
+     * polyline for each visible run being plotted by the current call to plotRoutes
+     */
+    private Map<VisibleRun, Polyline> nextRunPolylines;
+    /**
+     * route patterns plotted by the last call to plotRoutes; their paths are kept in memory
+     */
+    private Set<RoutePattern> plottedPatterns;
 
     /**
      * Constructor
@@ -40,14 +57,20 @@ public class BusRouteDrawer extends MapViewOverlay {
         super(context, mapView);
         busRouteLegendOverlay = createBusRouteLegendOverlay();
         busRouteOverlays = new ArrayList<>();
+        runPolylines = new HashMap<>();
+        nextRunPolylines = new HashMap<>();
+        plottedPatterns = new HashSet<>();
     }
 
     /**
      * Plot each visible segment of each route pattern of each route going through the selected stop.
+     * Route patterns are drawn from paths simplified to suit the zoom level, with one polyline for each
+     * run of consecutive visible segments.  Polylines for runs that were visible last time are reused.
      */
     public void plotRoutes(int zoomLevel) {
         setUpVisuals();
         Stop selectedStop = StopManager.getInstance().getSelected();
+        Set<RoutePattern> patterns = new HashSet<>();
 
         if (selectedStop != null) {
             Set<Route> routes = selectedStop.getRoutes();
@@ -57,9 +80,29 @@ public class BusRouteDrawer extends MapViewOverlay {
                 List<RoutePattern> routePatterns = route.getPatterns();
                 for (RoutePattern routePattern : routePatterns) {
                     setUpPolyline(routePattern, routeNumberToColor, zoomLevel);
+                    patterns.add(routePattern);
                 }
             }
         }
+
+        Map<VisibleRun, Polyline> plotted = nextRunPolylines;
+        nextRunPolylines = runPolylines;
+        nextRunPolylines.clear();
+        runPolylines = plotted;
+        releaseUnplottedPaths(patterns);
+    }
+
+    /**
+     * Release the paths of patterns that were plotted last time but are not plotted now
+     *
+     * @param patterns the patterns plotted now
+     */
+    private void releaseUnplottedPaths(Set<RoutePattern> patterns) {
+        plottedPatterns.removeAll(patterns);
+        for (RoutePattern routePattern : plottedPatterns) {
+            routePattern.releasePath();
+        }
+        plottedPatterns = patterns;
     }
 
     private void setUpVisuals() {
@@ -69,21 +112,31 @@ public class BusRouteDrawer extends MapViewOverlay {
     }
 
     private void setUpPolyline(RoutePattern routePattern, int routeNumberToColor, int zoomLevel) {
-        List<LatLon> latLons = routePattern.getPath();
-        for (int i = 0; i < latLons.size() - 1; i++) {
-            Polyline polyline = new Polyline(context);
-            polyline.setColor(routeNumberToColor);
-            polyline.setWidth(getLineWidth(zoomLevel));
-            LatLon src = latLons.get(i);
-            LatLon dst = latLons.get(i + 1);
-            if (Geometry.rectangleIntersectsLine(northWest, southEast, src, dst)) {
-                List<GeoPoint> geoPoints = new ArrayList<>();
-                geoPoints.add(new GeoPoint(latLons.get(i).getLatitude(), latLons.get(i).getLongitude()));
-                geoPoints.add(new GeoPoint(latLons.get(i + 1).getLatitude(), latLons.get(i + 1).getLongitude()));
-                polyline.setPoints(geoPoints);
-                busRouteOverlays.add(polyline);
+        PatternPath path = routePattern.getPatternPath().forZoom(zoomLevel);
+        RunCollector runs = new RunCollector(path, routeNumberToColor, getLineWidth(zoomLevel));
+        path.visitSegmentsInRectangle(northWest, southEast, runs);
+        runs.finish();
+    }
+
+    /**
+     * Add polyline for points first to last (inclusive) of path to the bus route overlays, reusing the
+     * polyline plotted last time for the same run if there is one
+     */
+    private void addRunPolyline(PatternPath path, int first, int last, int color, float width) {
+        VisibleRun run = new VisibleRun(path, first, last);
+        Polyline polyline = runPolylines.get(run);
+        if (polyline == null) {
+            polyline = new Polyline(context);
+            List<GeoPoint> geoPoints = new ArrayList<>(last - first + 1);
+            for (int i = first; i <= last; i++) {
+                geoPoints.add(Geometry.gpFromMicroDegrees(path.getLatitudeE6(i), path.getLongitudeE6(i)));
             }
+            polyline.setPoints(geoPoints);
         }
+        polyline.setColor(color);
+        polyline.setWidth(width);
+        nextRunPolylines.put(run, polyline);
+        busRouteOverlays.add(polyline);
     }
 
     public List<Polyline> getBusRouteOverlays() {
@@ -118,4 +171,81 @@ public class BusRouteDrawer extends MapViewOverlay {
             return 2.0f * BusesAreUs.dpiFactor();
         }
     }
+
+    /**
+     * Segment visitor that groups consecutive visible segments of a path into runs, and plots a polyline
+     * for each run
+     */
+    private class RunCollector implements SegmentVisitor {
+        private final PatternPath path;
+        private final int color;
+        private final float width;
+        // first and last segment of the run being collected; first is -1 if there is none
+        private int first = -1;
+        private int last = -1;
+
+        RunCollector(PatternPath path, int color, float width) {
+            this.path = path;
+            this.color = color;
+            this.width = width;
+        }
+
+        @Override
+        public void visit(int index) {
+            if (first >= 0 && index != last + 1) {
+                finish();
+            }
+            if (first < 0) {
+                first = index;
+            }
+            last = index;
+        }
+
+        /**
+         * Plot the run being collected, if any
+         */
+        void finish() {
+            if (first >= 0) {
+                addRunPolyline(path, first, last + 1, color, width);
+                first = -1;
+            }
+        }
+    }
+
+    /**
+     * A run of consecutive points of a (possibly simplified) pattern path
+     */
+    private static class VisibleRun {
+        private final PatternPath path;
+        private final int first;
+        private final int last;
+
+        VisibleRun(PatternPath path, int first, int last) {
+            this.path = path;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            VisibleRun that = (VisibleRun) o;
+            return path == that.path && first == that.first && last == that.last;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(path);
+            result = 31 * result + first;
+            result = 31 * result + last;
+            return result;
+        }
+    }
 }
@@ -2,18 +2,21 @@ package ca.ubc.cs.cpsc210.translink.ui;
 
 import android.app.Activity;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.location.Location;
 import ca.ubc.cs.cpsc210.translink.BusesAreUs;
 import ca.ubc.cs.cpsc210.translink.R;
+import ca.ubc.cs.cpsc210.translink.model.ClusterVisitor;
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopCluster;
 import ca.ubc.cs.cpsc210.translink.model.StopManager;
 import ca.ubc.cs.cpsc210.translink.util.Geometry;
-import org.osmdroid.bonuspack.clustering.RadiusMarkerClusterer;
+import org.osmdroid.bonuspack.overlays.FolderOverlay;
 import org.osmdroid.bonuspack.overlays.Marker;
-import org.osmdroid.util.GeoPoint;
 import org.osmdroid.views.MapView;
 
 import java.util.*;
@@ -21,19 +24,49 @@ import java.util.*;
 // A plotter for bus stop locations
 public class BusStopPlotter extends MapViewOverlay {
     /**
-     * clusterer
+     * largest number of unused markers kept for reuse
      */
-    private RadiusMarkerClusterer stopClusterer;
+    private static final int MAX_POOLED_MARKERS = 256;
     /**
-     * maps each stop to corresponding marker on map
+     * largest number of cluster icons (one for each cluster size) kept for reuse
+     */
+    private static final int MAX_CLUSTER_ICONS = 64;
+    /**
+     * overlay holding the markers for the visible stops and clusters of stops
+     */
+    private FolderOverlay stopOverlay;
+    /**
+     * maps each stop cluster currently plotted to the marker drawing it
+     */
+    private Map<StopCluster, Marker> clusterMarkerMap = new HashMap<>();
+    /**
+     * maps each stop currently plotted on its own to corresponding marker on map
      */
     private Map<Stop, Marker> stopMarkerMap = new HashMap<>();
     /**
-     * marker for stop that is nearest to user (null if no such stop)
+     * markers no longer plotted, kept for reuse by stops and clusters that come into view
+     */
+    private Deque<Marker> markerPool = new ArrayDeque<>();
+    /**
+     * icon for each cluster size recently drawn, least recently used first
+     */
+    private Map<Integer, Drawable> clusterIcons = new LinkedHashMap<Integer, Drawable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Drawable> eldest) {
+            return size() > MAX_CLUSTER_ICONS;
+        }
+    };
+    /**
+     * stop that is nearest to user (null if no such stop)
      */
-    private Marker nearestStnMarker;
+    private Stop nearestStop;
     private Activity activity;
     private StopInfoWindow stopInfoWindow;
+    private Drawable stopIconDrawable;
+    private Drawable closestStopIconDrawable;
+    private Bitmap clusterIcon;
+    private Paint clusterTextPaint;
+    private Marker.OnMarkerClickListener clusterClickListener;
 
     /**
      * Constructor
@@ -44,46 +77,94 @@ public class BusStopPlotter extends MapViewOverlay {
     public BusStopPlotter(Activity activity, MapView mapView) {
         super(activity.getApplicationContext(), mapView);
         this.activity = activity;
-        nearestStnMarker = null;
+        nearestStop = null;
         stopInfoWindow = new StopInfoWindow((StopSelectionListener) activity, mapView);
-        newStopClusterer();
+        stopIconDrawable = activity.getResources().getDrawable(R.drawable.stop_icon);
+        closestStopIconDrawable = activity.getResources().getDrawable(R.drawable.closest_stop_icon);
+        stopOverlay = new FolderOverlay(activity);
+        setUpClusterVisuals();
     }
 
-    public RadiusMarkerClusterer getStopClusterer() {
-        return stopClusterer;
+    public FolderOverlay getStopOverlay() {
+        return stopOverlay;
     }
 
     /**
-     * Mark all visible stops in stop manager onto map.
+     * Mark all visible stops in stop manager onto map, grouping stops that are close together at the
+     * current zoom level into clusters.  Clusters are looked up in the hierarchy precomputed by the stop
+     * manager.  Only clusters that have come into view since the last call are added to the map, and only
+     * those that have gone out of view are removed.
      */
     public void markStops(Location currentLocation) {
-        Drawable stopIconDrawable = activity.getResources().getDrawable(R.drawable.stop_icon);
-        updateMapArea();
-        StopManager stopManager = StopManager.getInstance();
-        for (Stop stop : stopManager) {
-            if (Geometry.rectangleContainsPoint(northWest, southEast, stop.getLocn())) {
-                Marker marker = getMarker(stop);
-                if (!(stopMarkerMap.containsKey(stop))) {
-                    marker = new Marker(mapView);
-                    initializeMarker(stopIconDrawable, stop, marker);
-                    createStopTitle(stop, marker);
-                    setMarker(stop, marker);
+        updateVisibleArea();
+        final Map<StopCluster, Marker> plotted = new HashMap<>();
+        StopManager.getInstance().clustersInRectangle(northWest, southEast, getZoom(), new ClusterVisitor() {
+            @Override
+            public void visit(StopCluster cluster) {
+                Marker marker = clusterMarkerMap.remove(cluster);
+                if (marker == null) {
+                    marker = obtainMarker();
+                    if (cluster.getStop() != null) {
+                        initializeMarker(cluster.getStop(), marker);
+                        createStopTitle(cluster.getStop(), marker);
+                        setMarker(cluster.getStop(), marker);
+                    } else {
+                        initializeClusterMarker(cluster, marker);
+                    }
+                    stopOverlay.add(marker);
                 }
-                stopClusterer.add(marker);
+                plotted.put(cluster, marker);
             }
-        }
-    }
+        });
 
-    private void updateMapArea() {
-        updateVisibleArea();
-        newStopClusterer();
+        // whatever is left was plotted last time but is no longer visible
+        for (Map.Entry<StopCluster, Marker> entry : clusterMarkerMap.entrySet()) {
+            if (entry.getKey().getStop() != null) {
+                clearMarker(entry.getKey().getStop());
+            }
+            stopOverlay.remove(entry.getValue());
+            recycleMarker(entry.getValue());
+        }
+        clusterMarkerMap = plotted;
     }
 
-    private void initializeMarker(Drawable stopIconDrawable, Stop stop, Marker marker) {
+    private void initializeMarker(Stop stop, Marker marker) {
         marker.setRelatedObject(stop);
         marker.setInfoWindow(stopInfoWindow);
-        marker.setIcon(stopIconDrawable);
-        marker.setPosition(new GeoPoint(stop.getLocn().getLatitude(), stop.getLocn().getLongitude()));
+        marker.setOnMarkerClickListener(null);
+        marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_BOTTOM);
+        marker.setIcon(stop.equals(nearestStop) ? closestStopIconDrawable : stopIconDrawable);
+        marker.setPosition(Geometry.gpFromMicroDegrees(stop.getLatitudeE6(), stop.getLongitudeE6()));
+    }
+
+    private void initializeClusterMarker(StopCluster cluster, Marker marker) {
+        marker.setRelatedObject(cluster);
+        marker.setInfoWindow(null);
+        marker.setOnMarkerClickListener(clusterClickListener);
+        marker.setAnchor(Marker.ANCHOR_CENTER, Marker.ANCHOR_CENTER);
+        marker.setIcon(getClusterIcon(cluster.getCount()));
+        marker.setPosition(Geometry.gpFromLatLon(cluster.getLocn()));
+        marker.setTitle(null);
+    }
+
+    /**
+     * Get a marker from the pool, or a new marker if the pool is empty
+     */
+    private Marker obtainMarker() {
+        Marker marker = markerPool.pollFirst();
+        return marker == null ? new Marker(mapView) : marker;
+    }
+
+    /**
+     * Return a marker that is no longer plotted to the pool, unless the pool is full or the marker's
+     * info window is open
+     */
+    private void recycleMarker(Marker marker) {
+        if (marker.isInfoWindowOpen() || markerPool.size() >= MAX_POOLED_MARKERS) {
+            return;
+        }
+        marker.setRelatedObject(null);
+        markerPool.addFirst(marker);
     }
 
     private void createStopTitle(Stop stop, Marker marker) {
@@ -101,21 +182,54 @@ public class BusStopPlotter extends MapViewOverlay {
     }
 
     /**
-     * Create a new stop cluster object used to group stops that are close by to reduce screen clutter
+     * Set up the icon and text used to draw clusters of stops, and the action taken when a cluster is tapped
      */
-    private void newStopClusterer() {
-        stopClusterer = new RadiusMarkerClusterer(activity);
-        stopClusterer.getTextPaint().setTextSize(20.0F * BusesAreUs.dpiFactor());
+    private void setUpClusterVisuals() {
+        Drawable clusterIconD = activity.getResources().getDrawable(R.drawable.stop_cluster);
+        clusterIcon = ((BitmapDrawable) clusterIconD).getBitmap();
+        clusterTextPaint = new Paint();
+        clusterTextPaint.setColor(0xffffffff);
+        clusterTextPaint.setTextSize(20.0F * BusesAreUs.dpiFactor());
+        clusterTextPaint.setFakeBoldText(true);
+        clusterTextPaint.setTextAlign(Paint.Align.CENTER);
+        clusterTextPaint.setAntiAlias(true);
+
+        // tapping a cluster zooms in on it
+        clusterClickListener = new Marker.OnMarkerClickListener() {
+            @Override
+            public boolean onMarkerClick(Marker marker, MapView mapView) {
+                mapView.getController().setCenter(marker.getPosition());
+                mapView.getController().zoomIn();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Get the icon for a cluster of the given number of stops: the cluster icon with the number drawn on it
+     */
+    private Drawable getClusterIcon(int count) {
+        Drawable icon = clusterIcons.get(count);
+        if (icon == null) {
+            Bitmap bitmap = Bitmap.createBitmap(clusterIcon.getWidth(), clusterIcon.getHeight(),
+                    clusterIcon.getConfig());
+            Canvas canvas = new Canvas(bitmap);
+            canvas.drawBitmap(clusterIcon, 0, 0, null);
+            float textHeight = clusterTextPaint.descent() + clusterTextPaint.ascent();
+            canvas.drawText(Integer.toString(count), bitmap.getWidth() / 2.0f,
+                    (bitmap.getHeight() - textHeight) / 2.0f, clusterTextPaint);
+            icon = new BitmapDrawable(activity.getResources(), bitmap);
+            clusterIcons.put(count, icon);
+        }
+        return icon;
+    }
+
+    private int getZoom() {
         int zoom = mapView == null ? 16 : mapView.getZoomLevel();
         if (zoom == 0) {
             zoom = MapDisplayFragment.DEFAULT_ZOOM;
         }
-        int radius = 1000 / zoom;
-
-        stopClusterer.setRadius(radius);
-        Drawable clusterIconD = activity.getResources().getDrawable(R.drawable.stop_cluster);
-        Bitmap clusterIcon = ((BitmapDrawable) clusterIconD).getBitmap();
-        stopClusterer.setIcon(clusterIcon);
+        return zoom;
     }
 
     /**
@@ -125,14 +239,12 @@ public class BusStopPlotter extends MapViewOverlay {
      * @param nearest stop nearest to user's location (null if no stop within StopManager.RADIUS metres)
      */
     public void updateMarkerOfNearest(Stop nearest) {
-        Drawable stopIconDrawable = activity.getResources().getDrawable(R.drawable.stop_icon);
-        Drawable closestStopIconDrawable = activity.getResources().getDrawable(R.drawable.closest_stop_icon);
-        if (nearestStnMarker != null) {
-            nearestStnMarker.setIcon(stopIconDrawable);
+        if (nearestStop != null && getMarker(nearestStop) != null) {
+            getMarker(nearestStop).setIcon(stopIconDrawable);
         }
-        if (nearest != null) {
-            nearestStnMarker = getMarker(nearest);
-            nearestStnMarker.setIcon(closestStopIconDrawable);
+        nearestStop = nearest;
+        if (nearest != null && getMarker(nearest) != null) {
+            getMarker(nearest).setIcon(closestStopIconDrawable);
         }
     }
 
@@ -152,8 +264,4 @@ public class BusStopPlotter extends MapViewOverlay {
     private void clearMarker(Stop stop) {
         stopMarkerMap.remove(stop);
     }
-
-    private void clearMarkers() {
-        stopMarkerMap.clear();
-    }
 }
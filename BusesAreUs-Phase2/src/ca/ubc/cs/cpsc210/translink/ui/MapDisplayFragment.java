@@ -2,20 +2,31 @@ package ca.ubc.cs.cpsc210.translink.ui;
 
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.pm.PackageManager;
 import android.location.Location;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import ca.ubc.cs.cpsc210.translink.R;
+import ca.ubc.cs.cpsc210.translink.loader.LoadStage;
+import ca.ubc.cs.cpsc210.translink.loader.StagedLoader;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
 import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
 import ca.ubc.cs.cpsc210.translink.parsers.RouteMapParser;
+import ca.ubc.cs.cpsc210.translink.parsers.RouteParser;
 import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
+import ca.ubc.cs.cpsc210.translink.snapshot.SnapshotReader;
+import ca.ubc.cs.cpsc210.translink.snapshot.SnapshotWriter;
+import ca.ubc.cs.cpsc210.translink.snapshot.exception.SnapshotFormatException;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
 import org.json.JSONException;
 import org.osmdroid.api.IMapController;
@@ -34,7 +45,12 @@ import org.osmdroid.views.overlay.mylocation.IMyLocationConsumer;
 import org.osmdroid.views.overlay.mylocation.IMyLocationProvider;
 import org.osmdroid.views.overlay.mylocation.MyLocationNewOverlay;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Represents a fragment used to display the map to the user
@@ -48,6 +64,18 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * tag for log output
      */
     private static final String MDF_TAG = "MDF_TAG";
+    /**
+     * name of file in which a snapshot of the parsed stops, routes and route maps is kept
+     */
+    private static final String SNAPSHOT_FILE = "model.snapshot";
+    /**
+     * names of the stages in which the model is loaded
+     */
+    private static final String READ_SNAPSHOT_STAGE = "read snapshot";
+    private static final String STOPS_STAGE = "stops";
+    private static final String ROUTES_STAGE = "routes";
+    private static final String ROUTE_MAPS_STAGE = "route maps";
+    private static final String SAVE_SNAPSHOT_STAGE = "save snapshot";
     /**
      * minimum change in distance to trigger update of user location
      */
@@ -76,10 +104,6 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * location provider used to respond to changes in user location
      */
     private GpsMyLocationProvider locnProvider;
-    /**
-     * stop manager
-     */
-    private StopManager stopManager;
     /**
      * location listener used to respond to changes in user location
      */
@@ -104,6 +128,26 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * bus location plotter
      */
     private BusLocationPlotter busLocationPlotter;
+    /**
+     * true once stops have been loaded in the background; until then the stop manager must not be used
+     */
+    private boolean stopsLoaded;
+    /**
+     * true once routes and route maps have been loaded in the background; until then routes must not be drawn
+     */
+    private boolean routeMapsLoaded;
+    /**
+     * user location received before stops were loaded (null if none), handled once they are
+     */
+    private Location pendingLocation;
+    /**
+     * true if stops, routes and route maps were read from the snapshot (written only by loader threads)
+     */
+    private volatile boolean loadedFromSnapshot;
+    /**
+     * transit network being loaded in the background, published once loaded (written only by loader threads)
+     */
+    private volatile TransitNetwork loadingNetwork;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -113,9 +157,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         eventsOverlay = new MapEventsOverlay(getActivity(), this);
         locnProvider = new GpsMyLocationProvider(getActivity());
         locnProvider.setLocationUpdateMinDistance(MIN_UPDATE_DISTANCE);
-        stopManager = StopManager.getInstance();
-        parseStops();
-        parseRouteMapText();
+        startLoadingModel();
     }
 
     @Override
@@ -233,7 +275,7 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         OverlayManager om = mapView.getOverlayManager();
         om.clear();
         om.addAll(busRouteDrawer.getBusRouteOverlays());
-        om.add(busStopPlotter.getStopClusterer());
+        om.add(busStopPlotter.getStopOverlay());
         om.add(locOverlay);
         om.add(busLocationPlotter.getBusLocationsOverlay());
         om.add(busRouteDrawer.getBusRouteLegendOverlay());
@@ -243,28 +285,155 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
     }
 
     /**
-     * Parse stop data from the file and add all stops to stop manager.
+     * Load stops, routes and route maps in the background, from the snapshot saved by a previous run if it
+     * is up to date and otherwise from the text data files, saving a new snapshot for next time.
+     * <p>
+     * Once the snapshot has been tried, stops, routes and route maps are loaded concurrently, as none of them
+     * depends on another, and the snapshot is saved once all three have loaded.
+     * <p>
+     * The data is loaded into a new transit network that replaces the current one when published.  If the
+     * current network is empty, the new one is published as soon as its stops are loaded, so they are marked
+     * on the map while routes and route maps are still loading.  Otherwise it is published once stops, routes
+     * and route maps have all loaded, and until then the map keeps showing the current network, so a reload
+     * is never seen half done.
+     */
+    private void startLoadingModel() {
+        final File snapshotFile = new File(getActivity().getFilesDir(), SNAPSHOT_FILE);
+        final long sourceStamp = sourceDataStamp();
+        final Handler handler = new Handler(Looper.getMainLooper());
+        StagedLoader loader = new StagedLoader(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        });
+
+        loader.addStage(READ_SNAPSHOT_STAGE, new LoadStage() {
+            @Override
+            public void load() {
+                TransitNetwork network = readSnapshot(snapshotFile, sourceStamp);
+                loadedFromSnapshot = network != null;
+                loadingNetwork = network != null ? network : new TransitNetwork();
+            }
+        });
+        loader.addStage(STOPS_STAGE, new LoadStage() {
+            @Override
+            public void load() throws IOException, JSONException {
+                if (!loadedFromSnapshot) {
+                    parseStops(loadingNetwork);
+                }
+                // cluster stops now, rather than on the main thread when they are first marked
+                loadingNetwork.getStopManager().prepareClusters();
+            }
+        }, READ_SNAPSHOT_STAGE);
+        loader.addStage(ROUTES_STAGE, new LoadStage() {
+            @Override
+            public void load() throws IOException, JSONException {
+                if (!loadedFromSnapshot) {
+                    parseRoutes(loadingNetwork);
+                }
+            }
+        }, READ_SNAPSHOT_STAGE);
+        loader.addStage(ROUTE_MAPS_STAGE, new LoadStage() {
+            @Override
+            public void load() throws IOException {
+                if (!loadedFromSnapshot) {
+                    parseRouteMapText(loadingNetwork);
+                }
+            }
+        }, READ_SNAPSHOT_STAGE);
+        loader.addStage(SAVE_SNAPSHOT_STAGE, new LoadStage() {
+            @Override
+            public void load() throws IOException {
+                if (!loadedFromSnapshot) {
+                    new SnapshotWriter(snapshotFile, loadingNetwork).write(sourceStamp);
+                }
+            }
+        }, STOPS_STAGE, ROUTES_STAGE, ROUTE_MAPS_STAGE);
+
+        loader.start(new ModelLoadListener(TransitNetwork.current().isEmpty()));
+    }
+
+    /**
+     * Load stops, routes and route maps into a new transit network from the snapshot saved by a previous run
+     * if it is up to date
+     *
+     * @return the network loaded from the snapshot, or null if the snapshot could not be used
+     */
+    private TransitNetwork readSnapshot(File snapshotFile, long sourceStamp) {
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+        TransitNetwork network = new TransitNetwork();
+        try {
+            new SnapshotReader(snapshotFile, network).read(sourceStamp);
+            Log.i(MDF_TAG, "Loaded model from snapshot");
+            return network;
+        } catch (IOException | SnapshotFormatException e) {
+            Log.i(MDF_TAG, "Snapshot not used: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Identify the version of the text data files, which are packaged with the application
+     * and so change only when the application is installed or updated.
+     *
+     * @return time at which the application was last installed or updated
+     */
+    private long sourceDataStamp() {
+        Activity activity = getActivity();
+        try {
+            return activity.getPackageManager().getPackageInfo(activity.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parse stop data from the file and add all stops to the stop manager of network.  Stops missing some of
+     * their data are skipped; any other failure is thrown, so the stage fails and no snapshot is saved.
+     */
+    private void parseStops(TransitNetwork network) throws IOException, JSONException {
+        try {
+            new StopParser("stops", network).parse();
+        } catch (StopDataMissingException e) {
+            Log.w(MDF_TAG, e.getMessage());
+        }
+    }
+
+    /**
+     * Parse route data from the file and add all routes and their patterns to the route manager of network.
+     * Routes missing some of their data are skipped; any other failure is thrown, so the stage fails and no
+     * snapshot is saved.
      */
-    private void parseStops() {
+    private void parseRoutes(TransitNetwork network) throws IOException, JSONException {
         try {
-            new StopParser("stops").parse();
-        } catch (IOException | StopDataMissingException | JSONException e) {
-            e.printStackTrace();
+            new RouteParser("allroutes", network).parse();
+        } catch (RouteDataMissingException e) {
+            Log.w(MDF_TAG, e.getMessage());
         }
     }
 
     /**
-     * Parse stop data from the file and add all stops to stop manager.
+     * Parse route map data from the file and add route maps to the routes of network.  Malformed lines are
+     * skipped; failure to read the file is thrown, so the stage fails and no snapshot is saved.
      */
-    private void parseRouteMapText() {
-        new RouteMapParser("allroutemapstxt").parse();
+    private void parseRouteMapText(TransitNetwork network) throws IOException {
+        RouteMapParser parser = new RouteMapParser("allroutemapstxt", network);
+        parser.index();
+        if (parser.getMalformedLineCount() > 0) {
+            Log.w(MDF_TAG, "Skipped " + parser.getMalformedLineCount() + " malformed route map lines");
+        }
     }
 
     /**
      * Plot each visible segment of each route pattern of each route going through the selected stop.
      */
     public void plotRoutes() {
-        busRouteDrawer.plotRoutes(zoom);
+        if (routeMapsLoaded) {
+            busRouteDrawer.plotRoutes(zoom);
+        }
     }
 
     /**
@@ -278,7 +447,9 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * Mark visible stops on map
      */
     private void markStops() {
-        busStopPlotter.markStops(currentLocation);
+        if (stopsLoaded) {
+            busStopPlotter.markStops(currentLocation);
+        }
         updateOverlays();
     }
 
@@ -297,6 +468,10 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      * @param location the location of the user
      */
     private void handleLocationChange(Location location) {
+        if (!stopsLoaded) {
+            pendingLocation = location;
+            return;
+        }
         LatLon locn = new LatLon(location.getLatitude(), location.getLongitude());
         Stop nearest = StopManager.getInstance().findNearestTo(locn);
         busStopPlotter.updateMarkerOfNearest(nearest);
@@ -331,6 +506,62 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         mapView.invalidate();
     }
 
+    /**
+     * Listener for the background loading of stops, routes and route maps; called on the main thread
+     */
+    private class ModelLoadListener implements StagedLoader.Listener {
+        // true if the network is to be published once its stops are loaded, rather than once all data has
+        private final boolean publishWithStops;
+        // names of the stages loaded so far
+        private final Set<String> loaded = new HashSet<>();
+        private boolean published;
+
+        ModelLoadListener(boolean publishWithStops) {
+            this.publishWithStops = publishWithStops;
+        }
+
+        @Override
+        public void onStageLoaded(String name, long millis) {
+            Log.i(MDF_TAG, "Loaded " + name + " in " + millis + " ms");
+            loaded.add(name);
+            if (!published && (publishWithStops ? STOPS_STAGE.equals(name)
+                    : loaded.containsAll(Arrays.asList(STOPS_STAGE, ROUTES_STAGE, ROUTE_MAPS_STAGE)))) {
+                TransitNetwork.publish(loadingNetwork);
+                published = true;
+            }
+            if (!published) {
+                return;
+            }
+
+            boolean newStops = !stopsLoaded && loaded.contains(STOPS_STAGE);
+            boolean newRoutes = !routeMapsLoaded && loaded.contains(ROUTES_STAGE) && loaded.contains(ROUTE_MAPS_STAGE);
+            if (newStops) {
+                stopsLoaded = true;
+                if (pendingLocation != null) {
+                    handleLocationChange(pendingLocation);
+                    pendingLocation = null;
+                }
+            }
+            if (newRoutes) {
+                routeMapsLoaded = true;
+            }
+            if (mapView != null && (newStops || newRoutes)) {
+                plotRoutes();
+                markStops();
+            }
+        }
+
+        @Override
+        public void onStageFailed(String name, Throwable cause) {
+            Log.w(MDF_TAG, "Unable to load " + name, cause);
+        }
+
+        @Override
+        public void onLoadFinished() {
+            Log.i(MDF_TAG, "Model loaded");
+        }
+    }
+
     /**
      * Custom listener for zoom events.  Changes width of line used to plot
      * bus routes based on zoom level.
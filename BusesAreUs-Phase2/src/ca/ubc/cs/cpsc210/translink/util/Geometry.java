@@ -14,19 +14,23 @@ public class Geometry {
      * @return                  true if the point is on the boundary or inside the rectangle
      */
     public static boolean rectangleContainsPoint(LatLon northWest, LatLon southEast, LatLon point) {
-        double nwlat;
-        double nwlon;
-        double selat;
-        double selon;
-        double lat;
-        double lon;
+        return rectangleContainsPoint(northWest, southEast, point.getLatitude(), point.getLongitude());
+    }
 
-        nwlat = northWest.getLatitude();
-        nwlon = northWest.getLongitude();
-        selat = southEast.getLatitude();
-        selon = southEast.getLongitude();
-        lat = point.getLatitude();
-        lon = point.getLongitude();
+    /**
+     * Return true if the point (lat, lon) is inside of, or on the boundary of, the rectangle formed by
+     * northWest and southEast
+     * @param northWest         the coordinate of the north west corner of the rectangle
+     * @param southEast         the coordinate of the south east corner of the rectangle
+     * @param lat               the latitude of the point in question
+     * @param lon               the longitude of the point in question
+     * @return                  true if the point is on the boundary or inside the rectangle
+     */
+    public static boolean rectangleContainsPoint(LatLon northWest, LatLon southEast, double lat, double lon) {
+        double nwlat = northWest.getLatitude();
+        double nwlon = northWest.getLongitude();
+        double selat = southEast.getLatitude();
+        double selon = southEast.getLongitude();
         return between(selat, nwlat, lat) && between(nwlon, selon, lon);
     }
 
@@ -39,15 +43,31 @@ public class Geometry {
      * @return                  true if any point on the line is on the boundary or inside the rectangle
      */
     public static boolean rectangleIntersectsLine(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
+        return rectangleIntersectsLine(northWest, southEast,
+                src.getLatitude(), src.getLongitude(), dst.getLatitude(), dst.getLongitude());
+    }
+
+    /**
+     * Return true if the rectangle intersects the line from (srclat, srclon) to (dstlat, dstlon)
+     * @param northWest         the coordinate of the north west corner of the rectangle
+     * @param southEast         the coordinate of the south east corner of the rectangle
+     * @param srclat            latitude of one end of the line in question
+     * @param srclon            longitude of one end of the line in question
+     * @param dstlat            latitude of the other end of the line in question
+     * @param dstlon            longitude of the other end of the line in question
+     * @return                  true if any point on the line is on the boundary or inside the rectangle
+     */
+    public static boolean rectangleIntersectsLine(LatLon northWest, LatLon southEast,
+                                                  double srclat, double srclon, double dstlat, double dstlon) {
         double nwlat = northWest.getLatitude();
         double nwlon = northWest.getLongitude();
         double selat = southEast.getLatitude();
         double selon = southEast.getLongitude();
 
-        double nwlat2 = (src.getLatitude() < dst.getLatitude() ? dst.getLatitude() : src.getLatitude());
-        double selat2 = (src.getLatitude() < dst.getLatitude() ? src.getLatitude() : dst.getLatitude());
-        double nwlon2 = (src.getLongitude() > dst.getLongitude() ? dst.getLongitude() : src.getLongitude());
-        double selon2 = (src.getLongitude() > dst.getLongitude() ? src.getLongitude() : dst.getLongitude());
+        double nwlat2 = (srclat < dstlat ? dstlat : srclat);
+        double selat2 = (srclat < dstlat ? srclat : dstlat);
+        double nwlon2 = (srclon > dstlon ? dstlon : srclon);
+        double selon2 = (srclon > dstlon ? srclon : dstlon);
 
         return !(selon < nwlon2 || selon2 < nwlon || nwlat < selat2 || nwlat2 < selat);
     }
@@ -73,4 +93,15 @@ public class Geometry {
     public static GeoPoint gpFromLatLon(LatLon ll) {
         return new GeoPoint(ll.getLatitude(), ll.getLongitude());
     }
+
+    /**
+     * Convert a location in microdegrees to GeoPoint
+     *
+     * @param latE6 the latitude in microdegrees
+     * @param lonE6 the longitude in microdegrees
+     * @return GeoPoint at the location
+     */
+    public static GeoPoint gpFromMicroDegrees(int latE6, int lonE6) {
+        return new GeoPoint(latE6, lonE6);
+    }
 }
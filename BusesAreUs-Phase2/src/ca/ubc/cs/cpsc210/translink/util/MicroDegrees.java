@@ -0,0 +1,44 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * Fixed point representation of coordinates as whole numbers of millionths of a degree (microdegrees).
+ * The source data has at most six decimal places, so its coordinates can be stored exactly as ints.
+ */
+public class MicroDegrees {
+    public static final double PER_DEGREE = 1e6;
+    // largest magnitude of a latitude or longitude, in degrees
+    private static final double MAX_DEGREES = 180.0;
+
+    /**
+     * Determine if degrees converts to microdegrees and back without any change in value
+     *
+     * @param degrees the coordinate in degrees
+     * @return true if toDegrees(fromDegrees(degrees)) == degrees
+     */
+    public static boolean isExact(double degrees) {
+        if (!(Math.abs(degrees) <= MAX_DEGREES)) {
+            return false;   // out of range, or NaN
+        }
+        return toDegrees(fromDegrees(degrees)) == degrees;
+    }
+
+    /**
+     * Convert degrees to the nearest whole number of microdegrees
+     *
+     * @param degrees the coordinate in degrees, between -180 and 180
+     * @return the coordinate in microdegrees
+     */
+    public static int fromDegrees(double degrees) {
+        return (int) Math.round(degrees * PER_DEGREE);
+    }
+
+    /**
+     * Convert microdegrees to degrees
+     *
+     * @param microDegrees the coordinate in microdegrees
+     * @return the coordinate in degrees
+     */
+    public static double toDegrees(int microDegrees) {
+        return microDegrees / PER_DEGREE;
+    }
+}
@@ -14,10 +14,23 @@ public class SphericalGeometry {
      * @return distance between p1 and p2 in metres
      */
     public static double distanceBetween(LatLon p1, LatLon p2) {
-        double lat1 = p1.getLatitude() / 180.0 * Math.PI;
-        double lat2 = p2.getLatitude() / 180.0 * Math.PI;
-        double deltaLon = (p2.getLongitude() - p1.getLongitude()) / 180.0 * Math.PI;
-        double deltaLat = (p2.getLatitude() - p1.getLatitude()) / 180.0 * Math.PI;
+        return distanceBetween(p1.getLatitude(), p1.getLongitude(), p2.getLatitude(), p2.getLongitude());
+    }
+
+    /**
+     * Find distance in metres between two points given by their latitudes and longitudes
+     *
+     * @param p1lat latitude of first point
+     * @param p1lon longitude of first point
+     * @param p2lat latitude of second point
+     * @param p2lon longitude of second point
+     * @return distance between the points in metres
+     */
+    public static double distanceBetween(double p1lat, double p1lon, double p2lat, double p2lon) {
+        double lat1 = p1lat / 180.0 * Math.PI;
+        double lat2 = p2lat / 180.0 * Math.PI;
+        double deltaLon = (p2lon - p1lon) / 180.0 * Math.PI;
+        double deltaLat = (p2lat - p1lat) / 180.0 * Math.PI;
 
         double a = Math.sin(deltaLat / 2.0) * Math.sin(deltaLat / 2.0)
                 + Math.cos(lat1) * Math.cos(lat2)
@@ -0,0 +1,114 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test the bounding box hierarchy over the segments of a path against a check of every segment
+ */
+class PathBoundsTest {
+    // numbers of points: none, one segment, less than a leaf, exactly one and two full leaves, and paths
+    // whose last leaf is only partly filled
+    private static final int[] SIZES = {0, 1, 2, 5, 9, 17, 10, 12, 50, 203, 1001};
+    private static final int NUM_RECTANGLES = 300;
+
+    private Random random;
+
+    @BeforeEach
+    void setup() {
+        random = new Random(210);
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        for (int size : SIZES) {
+            PatternPath path = randomPath(size);
+            PathBounds bounds = new PathBounds(path);
+            for (int i = 0; i < NUM_RECTANGLES; i++) {
+                double extent = i % 3 == 0 ? 0.05 : 0.005;
+                double north = 49.15 + random.nextDouble() * 0.2;
+                double west = -123.25 + random.nextDouble() * 0.3;
+                LatLon northWest = new LatLon(north, west);
+                LatLon southEast = new LatLon(north - random.nextDouble() * extent,
+                        west + random.nextDouble() * extent);
+                assertEquals(bruteForce(path, northWest, southEast), visit(bounds, northWest, southEast),
+                        "path of " + size + " points");
+            }
+        }
+    }
+
+    @Test
+    void testLastSegmentOfPartialLeaf() {
+        // 8 segments fill the first leaf, and the 12th and last segment is alone in the partly filled second
+        PatternPath path = randomPath(13);
+        PathBounds bounds = new PathBounds(path);
+        LatLon end = path.getPoint(12);
+        List<Integer> found = visit(bounds, end, end);
+        assertTrue(found.contains(11));
+        assertEquals(bruteForce(path, end, end), found);
+    }
+
+    @Test
+    void testWholePathAndNothing() {
+        PatternPath path = randomPath(203);
+        PathBounds bounds = new PathBounds(path);
+        List<Integer> found = visit(bounds, new LatLon(90, -180), new LatLon(-90, 180));
+        assertEquals(202, found.size());
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals(i, (int) found.get(i));
+        }
+        assertTrue(visit(bounds, new LatLon(10, 10), new LatLon(9, 11)).isEmpty());
+        // inverted rectangle
+        assertTrue(visit(bounds, new LatLon(49.1, -122.9), new LatLon(49.4, -123.3)).isEmpty());
+    }
+
+    /**
+     * Random path of straight runs and turns in and around Vancouver
+     */
+    private PatternPath randomPath(int size) {
+        double[] coords = new double[2 * size];
+        double lat = 49.25;
+        double lon = -123.1;
+        for (int i = 0; i < size; i++) {
+            coords[2 * i] = lat;
+            coords[2 * i + 1] = lon;
+            lat = Math.max(49.1, Math.min(49.4, lat + (random.nextDouble() - 0.5) * 0.01));
+            lon = Math.max(-123.3, Math.min(-122.9, lon + (random.nextDouble() - 0.5) * 0.015));
+        }
+        return new PatternPath(coords);
+    }
+
+    private static List<Integer> visit(PathBounds bounds, LatLon northWest, LatLon southEast) {
+        final List<Integer> found = new ArrayList<>();
+        bounds.visitSegmentsInRectangle(northWest, southEast, new SegmentVisitor() {
+            @Override
+            public void visit(int segment) {
+                found.add(segment);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Indexes, in increasing order, of the segments of path that intersect the rectangle
+     */
+    private static List<Integer> bruteForce(PatternPath path, LatLon northWest, LatLon southEast) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = 0; i + 1 < path.size(); i++) {
+            if (Geometry.rectangleIntersectsLine(northWest, southEast, path.getPoint(i), path.getPoint(i + 1))) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+}
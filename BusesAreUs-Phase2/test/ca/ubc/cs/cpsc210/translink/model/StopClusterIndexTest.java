@@ -0,0 +1,184 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test the hierarchy of stop clusters, checking each query against every cluster of its zoom level
+ */
+class StopClusterIndexTest {
+    private static final int NUM_STOPS = 600;
+    private static final int NUM_RECTANGLES = 200;
+    private static final LatLon WORLD_NW = new LatLon(85.0, -180.0);
+    private static final LatLon WORLD_SE = new LatLon(-85.0, 180.0);
+
+    private Random random;
+    private List<Stop> stops;
+    private StopClusterIndex index;
+
+    @BeforeEach
+    void setup() {
+        random = new Random(210);
+        stops = new ArrayList<>();
+        for (int i = 0; i < NUM_STOPS; i++) {
+            // most stops around Vancouver, some of them stacked on one spot, and a few far away
+            LatLon locn;
+            if (i % 50 == 0) {
+                locn = new LatLon(-60 + random.nextDouble() * 120, -170 + random.nextDouble() * 340);
+            } else if (i % 10 == 0) {
+                locn = new LatLon(49.2827, -123.1207);
+            } else {
+                locn = new LatLon(49.0 + random.nextDouble() * 0.4, -123.3 + random.nextDouble() * 0.5);
+            }
+            stops.add(new Stop(50000 + i, "Stop " + i, locn));
+        }
+        // stops without a location are left out of the clusters
+        List<Stop> all = new ArrayList<>(stops);
+        all.add(new Stop(60000, "No location", null));
+        index = new StopClusterIndex(all);
+    }
+
+    @Test
+    void testLeavesAreTheStops() {
+        List<StopCluster> leaves = allClusters(StopClusterIndex.MAX_ZOOM + 1);
+        assertEquals(NUM_STOPS, leaves.size());
+        Set<Stop> seen = new HashSet<>();
+        for (StopCluster c : leaves) {
+            assertEquals(1, c.getCount());
+            assertNotNull(c.getStop());
+            assertTrue(seen.add(c.getStop()));
+        }
+        assertEquals(new HashSet<>(stops), seen);
+    }
+
+    @Test
+    void testEveryLevelHoldsEveryStop() {
+        int previousSize = NUM_STOPS;
+        double stopsX = 0;
+        double stopsY = 0;
+        for (Stop s : stops) {
+            stopsX += StopCluster.mercatorX(s.getLongitude());
+            stopsY += StopCluster.mercatorY(s.getLatitude());
+        }
+
+        for (int z = StopClusterIndex.MAX_ZOOM; z >= StopClusterIndex.MIN_ZOOM; z--) {
+            List<StopCluster> level = allClusters(z);
+            int count = 0;
+            double sumX = 0;
+            double sumY = 0;
+            for (StopCluster c : level) {
+                count += c.getCount();
+                sumX += c.getX() * c.getCount();
+                sumY += c.getY() * c.getCount();
+            }
+            // each cluster is at the centroid of its stops, so merging keeps the centroid of all the stops
+            assertEquals(NUM_STOPS, count);
+            assertEquals(stopsX, sumX, 1e-9);
+            assertEquals(stopsY, sumY, 1e-9);
+            // clusters only ever merge as zoom decreases
+            assertTrue(level.size() <= previousSize);
+            previousSize = level.size();
+        }
+        // the stacked stops are always one cluster, and at the lowest zoom the Vancouver stops are too
+        assertTrue(previousSize < NUM_STOPS / 10);
+    }
+
+    @Test
+    void testVisitRectangleMatchesBruteForce() {
+        for (int z = StopClusterIndex.MIN_ZOOM; z <= StopClusterIndex.MAX_ZOOM + 1; z++) {
+            List<StopCluster> level = allClusters(z);
+            for (int i = 0; i < NUM_RECTANGLES; i++) {
+                LatLon nw;
+                LatLon se;
+                if (i % 4 == 0) {
+                    // anywhere in the world, usually covering more cells than are occupied
+                    double north = -80 + random.nextDouble() * 160;
+                    double west = -180 + random.nextDouble() * 360;
+                    nw = new LatLon(north, west);
+                    se = new LatLon(north - random.nextDouble() * 80, west + random.nextDouble() * 180);
+                } else {
+                    // a screen sized view of Vancouver
+                    double size = random.nextDouble() * 0.2;
+                    double north = 49.0 + random.nextDouble() * 0.5;
+                    double west = -123.4 + random.nextDouble() * 0.6;
+                    nw = new LatLon(north, west);
+                    se = new LatLon(north - size, west + size);
+                }
+                assertEquals(bruteForce(level, nw, se), visit(z, nw, se));
+            }
+        }
+    }
+
+    @Test
+    void testVisitRectangleAroundOneStop() {
+        Stop s = stops.get(1);
+        LatLon locn = s.getLocn();
+        Set<StopCluster> found = visit(StopClusterIndex.MAX_ZOOM + 1, locn, locn);
+        assertEquals(1, found.size());
+        assertEquals(s, found.iterator().next().getStop());
+    }
+
+    @Test
+    void testZoomBeyondLevelsClamped() {
+        assertEquals(visit(StopClusterIndex.MIN_ZOOM, WORLD_NW, WORLD_SE),
+                visit(StopClusterIndex.MIN_ZOOM - 5, WORLD_NW, WORLD_SE));
+        assertEquals(visit(StopClusterIndex.MAX_ZOOM + 1, WORLD_NW, WORLD_SE),
+                visit(StopClusterIndex.MAX_ZOOM + 10, WORLD_NW, WORLD_SE));
+    }
+
+    @Test
+    void testNoStops() {
+        index = new StopClusterIndex(new ArrayList<Stop>());
+        for (int z = StopClusterIndex.MIN_ZOOM; z <= StopClusterIndex.MAX_ZOOM + 1; z++) {
+            assertTrue(allClusters(z).isEmpty());
+        }
+    }
+
+    private List<StopCluster> allClusters(int zoomLevel) {
+        final List<StopCluster> found = new ArrayList<>();
+        index.visitClusters(WORLD_NW, WORLD_SE, zoomLevel, new ClusterVisitor() {
+            @Override
+            public void visit(StopCluster cluster) {
+                found.add(cluster);
+            }
+        });
+        return found;
+    }
+
+    private Set<StopCluster> visit(int zoomLevel, LatLon northWest, LatLon southEast) {
+        final Set<StopCluster> found = new HashSet<>();
+        index.visitClusters(northWest, southEast, zoomLevel, new ClusterVisitor() {
+            @Override
+            public void visit(StopCluster cluster) {
+                assertTrue(found.add(cluster), "cluster visited twice");
+            }
+        });
+        return found;
+    }
+
+    private static Set<StopCluster> bruteForce(List<StopCluster> level, LatLon northWest, LatLon southEast) {
+        double minX = StopCluster.mercatorX(northWest.getLongitude());
+        double minY = StopCluster.mercatorY(northWest.getLatitude());
+        double maxX = StopCluster.mercatorX(southEast.getLongitude());
+        double maxY = StopCluster.mercatorY(southEast.getLatitude());
+        Set<StopCluster> inside = new HashSet<>();
+        for (StopCluster c : level) {
+            if (minX <= c.getX() && c.getX() <= maxX && minY <= c.getY() && c.getY() <= maxY) {
+                inside.add(c);
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,109 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/**
+ * Test the spatial index of stops used by the StopManager
+ */
+class StopGridTest {
+    private static final LatLon DOWNTOWN = new LatLon(49.2827, -123.1207);
+
+    private StopGrid grid;
+
+    @BeforeEach
+    void setup() {
+        grid = new StopGrid();
+    }
+
+    @Test
+    void testEmptyGrid() {
+        assertNull(grid.findNearest(DOWNTOWN, 10000));
+        assertEquals(0, grid.findNearest(DOWNTOWN, 5, 10000).size());
+    }
+
+    @Test
+    void testFoundAcrossEmptyCells() {
+        // several cells north east of the query point, with nothing in between
+        Stop far = new Stop(1, "Far", new LatLon(49.3127, -123.0807));
+        grid.add(far);
+        assertSame(far, grid.findNearest(DOWNTOWN, 10000));
+
+        // a stop in a nearer cell, but not the query point's cell, is found first
+        Stop near = new Stop(2, "Near", new LatLon(49.2627, -123.1407));
+        grid.add(near);
+        assertSame(near, grid.findNearest(DOWNTOWN, 10000));
+    }
+
+    @Test
+    void testStopExactlyAtRadius() {
+        Stop s = new Stop(1, "Stop", new LatLon(49.29, -123.11));
+        grid.add(s);
+        double distance = SphericalGeometry.distanceBetween(s.getLocn(), DOWNTOWN);
+
+        // stops at the radius or further are left out
+        assertNull(grid.findNearest(DOWNTOWN, distance));
+        assertEquals(0, grid.findNearest(DOWNTOWN, 5, distance).size());
+        assertSame(s, grid.findNearest(DOWNTOWN, Math.nextUp(distance)));
+    }
+
+    @Test
+    void testTiesOrderedByNumber() {
+        // equally distant, with numbers far enough apart that subtracting them overflows
+        Stop high = new Stop(Integer.MAX_VALUE, "High", DOWNTOWN);
+        Stop low = new Stop(-5, "Low", DOWNTOWN);
+        Stop middle = new Stop(7, "Middle", DOWNTOWN);
+        grid.add(high);
+        grid.add(low);
+        grid.add(middle);
+
+        assertSame(low, grid.findNearest(DOWNTOWN, 10000));
+        assertEquals(Arrays.asList(low, middle, high), grid.findNearest(DOWNTOWN, 3, 10000));
+        assertEquals(Arrays.asList(low, middle), grid.findNearest(DOWNTOWN, 2, 10000));
+    }
+
+    @Test
+    void testMovedStop() {
+        LatLon before = new LatLon(49.2827, -123.1207);
+        LatLon after = new LatLon(49.2500, -123.0100);
+        Stop s = new Stop(1, "Stop", before);
+        grid.add(s);
+
+        grid.remove(s, s.getLocn());
+        s.setLocn(after);
+        grid.add(s);
+
+        assertNull(grid.findNearest(before, 100));
+        assertSame(s, grid.findNearest(after, 100));
+        assertEquals(1, grid.findNearest(before, 5, 100000).size());
+    }
+
+    @Test
+    void testRemoveLastStopOfCell() {
+        Stop s = new Stop(1, "Stop", DOWNTOWN);
+        grid.add(s);
+        grid.remove(s, s.getLocn());
+        assertNull(grid.findNearest(DOWNTOWN, 10000));
+
+        // removing a stop that is not there, or that has no location, changes nothing
+        grid.add(s);
+        grid.remove(new Stop(2, "Other", DOWNTOWN), DOWNTOWN);
+        grid.remove(s, null);
+        assertSame(s, grid.findNearest(DOWNTOWN, 10000));
+    }
+
+    @Test
+    void testStopWithoutLocationNotIndexed() {
+        grid.add(new Stop(1, "Nowhere", null));
+        assertNull(grid.findNearest(DOWNTOWN, Double.MAX_VALUE));
+    }
+}
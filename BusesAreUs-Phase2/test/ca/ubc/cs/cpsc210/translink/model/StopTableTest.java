@@ -0,0 +1,106 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test adding, finding and iterating over stops in a StopTable as it grows
+ */
+class StopTableTest {
+    private static final LatLon LOCN = new LatLon(49.26, -123.25);
+
+    private StopTable table;
+
+    @BeforeEach
+    void setup() {
+        table = new StopTable();
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(0, table.size());
+        assertNull(table.get(50001));
+        assertFalse(table.iterator().hasNext());
+    }
+
+    @Test
+    void testConsecutiveNumbers() {
+        // stop numbers are mostly consecutive, as in the real data, and fill the table through many resizes
+        checkAddAndFind(50000, 1, 10000);
+    }
+
+    @Test
+    void testSpacedNumbers() {
+        // numbers that all share their low bits must still spread over the table
+        checkAddAndFind(0, 1 << 16, 3000);
+        table.clear();
+        checkAddAndFind(-5000, 4096, 3000);
+    }
+
+    @Test
+    void testExistingStopKept() {
+        Stop first = new Stop(50001, "Main St", LOCN);
+        assertNull(table.putIfAbsent(first));
+        assertSame(first, table.putIfAbsent(new Stop(50001, "Other", LOCN)));
+        assertSame(first, table.get(50001));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void testClear() {
+        checkAddAndFind(50000, 1, 100);
+        table.clear();
+        assertEquals(0, table.size());
+        assertNull(table.get(50000));
+        assertFalse(table.iterator().hasNext());
+    }
+
+    @Test
+    void testIteratorRemoveUnsupported() {
+        table.putIfAbsent(new Stop(50001, "Main St", LOCN));
+        Iterator<Stop> it = table.iterator();
+        it.next();
+        try {
+            it.remove();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Add count stops numbered from first in steps of step, then check each is found and iterated over once
+     */
+    private void checkAddAndFind(int first, int step, int count) {
+        for (int i = 0; i < count; i++) {
+            int number = first + i * step;
+            assertNull(table.putIfAbsent(new Stop(number, "Stop " + number, LOCN)));
+        }
+        assertEquals(count, table.size());
+
+        Set<Integer> seen = new HashSet<>();
+        for (Stop stop : table) {
+            assertEquals(0, (stop.getNumber() - first) % step);
+            seen.add(stop.getNumber());
+        }
+        assertEquals(count, seen.size());
+        for (int i = 0; i < count; i++) {
+            int number = first + i * step;
+            assertEquals(number, table.get(number).getNumber());
+        }
+        assertNull(table.get(first - step));
+        assertNull(table.get(first + count * step));
+    }
+}
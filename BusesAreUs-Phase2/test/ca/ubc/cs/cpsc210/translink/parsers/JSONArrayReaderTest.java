@@ -0,0 +1,121 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test reading the objects of a JSON array one at a time
+ */
+class JSONArrayReaderTest {
+
+    @Test
+    void testEmptyArray() throws JSONException {
+        assertNull(reader(" [ \n\t] ").nextObject());
+    }
+
+    @Test
+    void testObjectsInOrder() throws JSONException {
+        JSONArrayReader reader = reader("[{\"StopNo\":1},\r\n {\"StopNo\":2} ,{\"StopNo\":3}]");
+        assertEquals(1, reader.nextObject().getInt("StopNo"));
+        assertEquals(2, reader.nextObject().getInt("StopNo"));
+        assertEquals(3, reader.nextObject().getInt("StopNo"));
+        assertNull(reader.nextObject());
+        assertNull(reader.nextObject());
+    }
+
+    @Test
+    void testEscapesInStrings() throws JSONException {
+        // an escaped quote or backslash, and braces and brackets inside strings, must not end the element
+        JSONArrayReader reader = reader("[{\"Name\":\"say \\\"hi\\\" }]\"},"
+                + "{\"Name\":\"C:\\\\\",\"Next\":\"{[\"},"
+                + "{\"Name\":\"\\\\\\\"\"}]");
+        assertEquals("say \"hi\" }]", reader.nextObject().getString("Name"));
+        JSONObject second = reader.nextObject();
+        assertEquals("C:\\", second.getString("Name"));
+        assertEquals("{[", second.getString("Next"));
+        assertEquals("\\\"", reader.nextObject().getString("Name"));
+        assertNull(reader.nextObject());
+    }
+
+    @Test
+    void testNestedArraysAndObjects() throws JSONException {
+        JSONArrayReader reader = reader("[{\"Route\":{\"No\":\"099\",\"Patterns\":[{\"Id\":\"EB1\"},[1,[2]]]}},"
+                + "{\"Stops\":[]}]");
+        JSONObject route = reader.nextObject().getJSONObject("Route");
+        assertEquals("099", route.getString("No"));
+        assertEquals("EB1", route.getJSONArray("Patterns").getJSONObject(0).getString("Id"));
+        assertEquals(2, route.getJSONArray("Patterns").getJSONArray(1).getJSONArray(1).getInt(0));
+        assertEquals(0, reader.nextObject().getJSONArray("Stops").length());
+        assertNull(reader.nextObject());
+    }
+
+    @Test
+    void testNotAnArray() {
+        checkRejected("");
+        checkRejected("   \n\t ");
+        checkRejected("{\"StopNo\":1}");
+    }
+
+    @Test
+    void testElementNotAnObject() {
+        checkRejected("[1]");
+        checkRejected("[[{\"StopNo\":1}]]");
+        checkRejected("[\"stop\"]");
+    }
+
+    @Test
+    void testTrailingComma() throws JSONException {
+        JSONArrayReader reader = reader("[{\"StopNo\":1},]");
+        assertEquals(1, reader.nextObject().getInt("StopNo"));
+        checkNextRejected(reader);
+    }
+
+    @Test
+    void testMissingSeparator() throws JSONException {
+        checkRejected("[{\"StopNo\":1} {\"StopNo\":2}]");
+        checkRejected("[{\"StopNo\":1}");
+    }
+
+    @Test
+    void testTruncatedElement() {
+        checkRejected("[{\"StopNo\":1");
+        checkRejected("[{\"Name\":\"Main");
+        checkRejected("[{\"Name\":\"Main\\");
+        checkRejected("[{\"Patterns\":[{}]");
+    }
+
+    private static JSONArrayReader reader(String json) throws JSONException {
+        return new JSONArrayReader(new StringReader(json));
+    }
+
+    /**
+     * Check that reading the first object of json fails, whether when the reader is made or when the object
+     * is read
+     */
+    private static void checkRejected(String json) {
+        JSONArrayReader reader;
+        try {
+            reader = reader(json);
+        } catch (JSONException e) {
+            return;
+        }
+        checkNextRejected(reader);
+    }
+
+    private static void checkNextRejected(JSONArrayReader reader) {
+        try {
+            reader.nextObject();
+            fail("Expected JSONException");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ca.ubc.cs.cpsc210.translink.tests.benchmark;
+
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of the work Route does while the full stops data set is loaded and used: linking every stop to
+ * the routes that serve it, as StopParser does, then looking stops up in their routes, taking snapshots of
+ * each route's stops and removing every stop from its routes.
+ * <p>
+ * The parsers read their files through the Android application context, so stops.json is parsed here with
+ * org.json, once and outside the timings, and only the work done by the model is timed.  Run from the
+ * BusesAreUs-Phase2 directory, or give the directory holding stops.json as the first argument and the
+ * number of runs as the second.  The best time of all runs is reported for each phase.
+ */
+public class RouteLoadBenchmark {
+    private static final String DEFAULT_DATA_DIR = "res/raw";
+    private static final int DEFAULT_RUNS = 15;
+
+    private final List<JSONObject> stopObjects;
+
+    private RouteLoadBenchmark(List<JSONObject> stopObjects) {
+        this.stopObjects = stopObjects;
+    }
+
+    public static void main(String[] args) throws IOException, JSONException {
+        File dataDir = new File(args.length > 0 ? args[0] : DEFAULT_DATA_DIR);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+
+        JSONArray stops = new JSONArray(readFile(new File(dataDir, "stops.json")));
+        List<JSONObject> stopObjects = new ArrayList<>();
+        for (int i = 0; i < stops.length(); i++) {
+            stopObjects.add(stops.getJSONObject(i));
+        }
+        new RouteLoadBenchmark(stopObjects).run(runs);
+    }
+
+    private void run(int runs) throws JSONException {
+        long bestLoad = Long.MAX_VALUE;
+        long bestLookup = Long.MAX_VALUE;
+        long bestSnapshot = Long.MAX_VALUE;
+        long bestRemove = Long.MAX_VALUE;
+        int links = 0;
+        int busiest = 0;
+
+        for (int run = 0; run < runs; run++) {
+            TransitNetwork network = new TransitNetwork();
+
+            long start = System.nanoTime();
+            load(network);
+            bestLoad = Math.min(bestLoad, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            links = lookUpEveryLink(network.getRouteManager());
+            bestLookup = Math.min(bestLookup, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            busiest = snapshotEveryRoute(network.getRouteManager());
+            bestSnapshot = Math.min(bestSnapshot, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            removeEveryStop(network.getRouteManager());
+            bestRemove = Math.min(bestRemove, System.nanoTime() - start);
+        }
+
+        System.out.println(stopObjects.size() + " stops, " + links + " stop/route links, busiest route has "
+                + busiest + " stops; best of " + runs + " runs:");
+        report("load", bestLoad);
+        report("hasStop on every link", bestLookup);
+        report("getStops of every route", bestSnapshot);
+        report("removeStop on every link", bestRemove);
+    }
+
+    /**
+     * Add every stop to network and link it to the routes serving it, as StopParser does
+     */
+    private void load(TransitNetwork network) throws JSONException {
+        for (JSONObject stopObject : stopObjects) {
+            Stop s = network.getStopManager().getStopWithNumber(stopObject.getInt("StopNo"),
+                    stopObject.getString("Name"),
+                    new LatLon(stopObject.getDouble("Latitude"), stopObject.getDouble("Longitude")));
+            for (String route : stopObject.getString("Routes").split(", *")) {
+                s.addRoute(network.getRouteManager().getRouteWithNumber(route));
+            }
+        }
+    }
+
+    private int lookUpEveryLink(RouteManager routeManager) {
+        int found = 0;
+        for (Route route : routeManager) {
+            for (Stop stop : route.getStops()) {
+                if (route.hasStop(stop)) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Take a fresh snapshot of the stops of each route, as after a change to its stops
+     */
+    private int snapshotEveryRoute(RouteManager routeManager) {
+        int busiest = 0;
+        for (Route route : routeManager) {
+            List<Stop> stops = route.getStops();
+            Stop first = stops.isEmpty() ? null : stops.get(0);
+            if (first != null) {
+                // removing and re-adding a stop discards the snapshot, so the next call copies the stops again
+                route.removeStop(first);
+                route.addStop(first);
+            }
+            busiest = Math.max(busiest, route.getStops().size());
+        }
+        return busiest;
+    }
+
+    private void removeEveryStop(RouteManager routeManager) {
+        for (Route route : routeManager) {
+            for (Stop stop : route.getStops()) {
+                route.removeStop(stop);
+            }
+        }
+    }
+
+    private static void report(String phase, long nanos) {
+        System.out.println(String.format("  %-26s %8.2f ms", phase, nanos / 1e6));
+    }
+
+    private static String readFile(File file) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = reader.read(buffer)) != -1) {
+                text.append(buffer, 0, count);
+            }
+            return text.toString();
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ca.ubc.cs.cpsc210.translink.tests.loader;
+
+import ca.ubc.cs.cpsc210.translink.loader.ArrivalsBatchLoader;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.ResponseCache;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test the ArrivalsBatchLoader, with downloads answered by fake data providers
+ */
+class ArrivalsBatchLoaderTest {
+    private static final String ARRIVALS = "[{\"RouteNo\":\"099\",\"Schedules\":"
+            + "[{\"ExpectedCountdown\":5,\"ScheduleStatus\":\"*\",\"Destination\":\"UBC\"}]}]";
+    // stop numbers whose downloads fail, and how
+    private static final int THROWS_IO = 1;
+    private static final int THROWS_RUNTIME = 2;
+    private static final int ERROR_RESPONSE = 3;
+    private static final int NOT_JSON = 4;
+
+    private ExecutorService downloader;
+    private ArrivalsBatchLoader loader;
+
+    @BeforeEach
+    void setup() {
+        downloader = Executors.newFixedThreadPool(2);
+        loader = newLoader(downloader);
+    }
+
+    @AfterEach
+    void teardown() {
+        downloader.shutdownNow();
+    }
+
+    @Test
+    void testEveryStopReported() throws InterruptedException {
+        List<Stop> stops = stops(10, 11, 12, 13, 14);
+        RecordingListener listener = new RecordingListener();
+        loader.load(stops, listener);
+        listener.await();
+
+        assertEquals(new HashSet<>(stops), listener.loaded);
+        assertTrue(listener.failed.isEmpty());
+        for (Stop stop : stops) {
+            assertTrue(stop.iterator().hasNext());
+        }
+    }
+
+    @Test
+    void testFailingDownloadsStillFinish() throws InterruptedException {
+        List<Stop> stops = stops(10, THROWS_IO, 11, THROWS_RUNTIME, ERROR_RESPONSE, NOT_JSON, 12);
+        RecordingListener listener = new RecordingListener();
+        loader.load(stops, listener);
+        listener.await();
+
+        assertEquals(new HashSet<>(stops(10, 11, 12)), listener.loaded);
+        assertEquals(new HashSet<>(stops(THROWS_IO, THROWS_RUNTIME, ERROR_RESPONSE, NOT_JSON)), listener.failed);
+        assertEquals(1, listener.finishes);
+    }
+
+    @Test
+    void testDownloaderReusedAcrossBatches() throws InterruptedException {
+        for (int batch = 0; batch < 3; batch++) {
+            RecordingListener listener = new RecordingListener();
+            loader.load(stops(10, THROWS_IO, 12), listener);
+            listener.await();
+            assertEquals(2, listener.loaded.size());
+            assertEquals(1, listener.failed.size());
+        }
+        assertFalse(downloader.isShutdown());
+    }
+
+    @Test
+    void testDownloaderShutDown() throws InterruptedException {
+        downloader.shutdown();
+        List<Stop> stops = stops(10, 11);
+        RecordingListener listener = new RecordingListener();
+        loader.load(stops, listener);
+        listener.await();
+
+        assertTrue(listener.loaded.isEmpty());
+        assertEquals(new HashSet<>(stops), listener.failed);
+    }
+
+    @Test
+    void testNoStops() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        loader.load(new ArrayList<Stop>(), listener);
+        listener.await();
+        assertEquals(1, listener.finishes);
+    }
+
+    /**
+     * Make a loader whose results are published one at a time, as when they are posted to the main thread
+     */
+    private static ArrivalsBatchLoader newLoader(Executor downloader) {
+        return new ArrivalsBatchLoader(new Executor() {
+            @Override
+            public synchronized void execute(Runnable command) {
+                command.run();
+            }
+        }, downloader, new ResponseCache(30000, 10, 100000)) {
+            @Override
+            protected DataProvider createDataProvider(Stop stop) {
+                return new FakeDataProvider(stop.getNumber());
+            }
+        };
+    }
+
+    private static List<Stop> stops(int... numbers) {
+        List<Stop> stops = new ArrayList<>();
+        for (int number : numbers) {
+            stops.add(new Stop(number, "Stop " + number, new LatLon(49.26, -123.25)));
+        }
+        return stops;
+    }
+
+    /**
+     * Provider answering with arrivals, or failing in the way given by the stop number
+     */
+    private static class FakeDataProvider implements DataProvider {
+        private final int stopNumber;
+
+        FakeDataProvider(int stopNumber) {
+            this.stopNumber = stopNumber;
+        }
+
+        @Override
+        public String dataSourceToString() throws IOException {
+            switch (stopNumber) {
+                case THROWS_IO:
+                    throw new IOException("Connection reset");
+                case THROWS_RUNTIME:
+                    throw new IllegalStateException("Broken provider");
+                case ERROR_RESPONSE:
+                    return "Error";
+                case NOT_JSON:
+                    return "<html>Service unavailable</html>";
+                default:
+                    return ARRIVALS;
+            }
+        }
+
+        @Override
+        public byte[] dataSourceToBytes() {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Listener that records the stops it is told of
+     */
+    private static class RecordingListener implements ArrivalsBatchLoader.Listener {
+        private final Set<Stop> loaded = Collections.synchronizedSet(new HashSet<Stop>());
+        private final Set<Stop> failed = Collections.synchronizedSet(new HashSet<Stop>());
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile int finishes;
+
+        @Override
+        public void onArrivalsLoaded(Stop stop) {
+            assertTrue(loaded.add(stop), "stop reported twice");
+        }
+
+        @Override
+        public void onArrivalsFailed(Stop stop, Exception cause) {
+            assertTrue(failed.add(stop), "stop reported twice");
+        }
+
+        @Override
+        public void onBatchFinished() {
+            finishes++;
+            finished.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(finished.await(10, TimeUnit.SECONDS), "batch did not finish");
+        }
+    }
+}
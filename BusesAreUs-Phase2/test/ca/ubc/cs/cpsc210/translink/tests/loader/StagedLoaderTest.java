@@ -0,0 +1,198 @@
+package ca.ubc.cs.cpsc210.translink.tests.loader;
+
+import ca.ubc.cs.cpsc210.translink.loader.LoadStage;
+import ca.ubc.cs.cpsc210.translink.loader.StagedLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test the StagedLoader
+ */
+class StagedLoaderTest {
+    private StagedLoader loader;
+    private RecordingListener listener;
+    // names of stages in the order their work ran
+    private List<String> ran;
+
+    @BeforeEach
+    void setup() {
+        // listener methods are called one at a time, as when they are posted to the main thread
+        loader = new StagedLoader(new Executor() {
+            @Override
+            public synchronized void execute(Runnable command) {
+                command.run();
+            }
+        });
+        listener = new RecordingListener();
+        ran = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @Test
+    void testNoStages() throws InterruptedException {
+        loader.start(listener);
+        listener.await();
+        assertEquals(Collections.singletonList("finished"), listener.events);
+    }
+
+    @Test
+    void testDependentRunsAfterDependencies() throws InterruptedException {
+        loader.addStage("a", new RecordingStage("a"));
+        loader.addStage("b", new RecordingStage("b"));
+        loader.addStage("c", new RecordingStage("c"), "a", "b");
+        loader.addStage("d", new RecordingStage("d"), "c");
+        loader.start(listener);
+        listener.await();
+
+        assertEquals(4, ran.size());
+        assertTrue(ran.indexOf("c") > ran.indexOf("a"));
+        assertTrue(ran.indexOf("c") > ran.indexOf("b"));
+        assertEquals("d", ran.get(3));
+
+        // each stage is reported loaded before any stage depending on it, and finished comes last
+        assertTrue(listener.events.indexOf("loaded c") > listener.events.indexOf("loaded a"));
+        assertTrue(listener.events.indexOf("loaded c") > listener.events.indexOf("loaded b"));
+        assertTrue(listener.events.indexOf("loaded d") > listener.events.indexOf("loaded c"));
+        assertEquals(5, listener.events.size());
+        assertEquals("finished", listener.events.get(4));
+    }
+
+    @Test
+    void testFailureSkipsDependents() throws InterruptedException {
+        final Exception cause = new Exception("broken");
+        loader.addStage("a", new LoadStage() {
+            @Override
+            public void load() throws Exception {
+                throw cause;
+            }
+        });
+        loader.addStage("b", new RecordingStage("b"));
+        loader.addStage("c", new RecordingStage("c"), "a", "b");
+        loader.addStage("d", new RecordingStage("d"), "c");
+        loader.start(listener);
+        listener.await();
+
+        assertEquals(Collections.singletonList("b"), ran);
+        assertTrue(listener.events.contains("failed a"));
+        assertTrue(listener.events.contains("failed c"));
+        assertTrue(listener.events.contains("failed d"));
+        assertTrue(listener.events.contains("loaded b"));
+        assertEquals(5, listener.events.size());
+        assertEquals("finished", listener.events.get(4));
+        for (Throwable t : listener.causes) {
+            assertSame(cause, t);
+        }
+    }
+
+    @Test
+    void testErrorInStageStillFinishes() throws InterruptedException {
+        final Error error = new OutOfMemoryError("no room");
+        loader.addStage("a", new LoadStage() {
+            @Override
+            public void load() {
+                throw error;
+            }
+        });
+        loader.addStage("b", new RecordingStage("b"), "a");
+        loader.start(listener);
+        listener.await();
+
+        assertEquals(3, listener.events.size());
+        assertEquals("failed a", listener.events.get(0));
+        assertEquals("failed b", listener.events.get(1));
+        assertEquals("finished", listener.events.get(2));
+        assertSame(error, listener.causes.get(0));
+        assertTrue(ran.isEmpty());
+    }
+
+    @Test
+    void testUnknownDependency() {
+        try {
+            loader.addStage("a", new RecordingStage("a"), "missing");
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    void testDuplicateStage() {
+        loader.addStage("a", new RecordingStage("a"));
+        try {
+            loader.addStage("a", new RecordingStage("a"));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    void testAddAfterStart() throws InterruptedException {
+        loader.start(listener);
+        try {
+            loader.addStage("a", new RecordingStage("a"));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        listener.await();
+    }
+
+    /**
+     * Stage that records when its work runs
+     */
+    private class RecordingStage implements LoadStage {
+        private final String name;
+
+        RecordingStage(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void load() {
+            ran.add(name);
+        }
+    }
+
+    /**
+     * Listener that records the events it is told of
+     */
+    private static class RecordingListener implements StagedLoader.Listener {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        private final List<Throwable> causes = Collections.synchronizedList(new ArrayList<Throwable>());
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public void onStageLoaded(String name, long millis) {
+            events.add("loaded " + name);
+        }
+
+        @Override
+        public void onStageFailed(String name, Throwable cause) {
+            events.add("failed " + name);
+            causes.add(cause);
+        }
+
+        @Override
+        public void onLoadFinished() {
+            events.add("finished");
+            finished.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(finished.await(10, TimeUnit.SECONDS), "loader did not finish");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ca.ubc.cs.cpsc210.translink.tests.model;
+
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test simplifying pattern paths for drawing at low zoom levels
+ */
+class PatternPathTest {
+    private static final int NUM_POINTS = 800;
+    private static final double[] TOLERANCES = {1e-6, 1e-5, 1e-4, 1e-3, 1e-2};
+
+    private PatternPath path;
+
+    @BeforeEach
+    void setup() {
+        // a winding path through Vancouver with points between 10 and 100 metres apart
+        Random random = new Random(210);
+        double[] coords = new double[2 * NUM_POINTS];
+        double lat = 49.2;
+        double lon = -123.2;
+        double heading = 0;
+        for (int i = 0; i < NUM_POINTS; i++) {
+            coords[2 * i] = lat;
+            coords[2 * i + 1] = lon;
+            heading += (random.nextDouble() - 0.5) * 1.2;
+            double step = 0.0001 + random.nextDouble() * 0.0009;
+            lat += Math.sin(heading) * step;
+            lon += Math.cos(heading) * step * 1.5;
+        }
+        path = new PatternPath(coords);
+    }
+
+    @Test
+    void testEndpointsKept() {
+        for (double tolerance : TOLERANCES) {
+            PatternPath simplified = path.simplify(tolerance);
+            assertEquals(path.getPoint(0), simplified.getPoint(0));
+            assertEquals(path.getPoint(NUM_POINTS - 1), simplified.getPoint(simplified.size() - 1));
+        }
+        for (int zoom = 0; zoom <= 20; zoom++) {
+            PatternPath simplified = path.forZoom(zoom);
+            assertEquals(path.getPoint(0), simplified.getPoint(0));
+            assertEquals(path.getPoint(NUM_POINTS - 1), simplified.getPoint(simplified.size() - 1));
+        }
+    }
+
+    @Test
+    void testToleranceRespected() {
+        double latScale = 1.0 / Math.cos(Math.toRadians(path.getLatitude(0)));
+        for (double tolerance : TOLERANCES) {
+            PatternPath simplified = path.simplify(tolerance);
+            int[] kept = keptIndexes(path, simplified);
+
+            // every dropped point is within tolerance of the segment joining the kept points either side of it
+            for (int k = 0; k + 1 < kept.length; k++) {
+                for (int i = kept[k] + 1; i < kept[k + 1]; i++) {
+                    double distance = distanceToSegment(path, i, kept[k], kept[k + 1], latScale);
+                    assertTrue(distance <= tolerance * (1 + 1e-9), "point " + i + " is " + distance + " away");
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDetailIncreasesWithZoom() {
+        PatternPath previous = path.forZoom(0);
+        for (int zoom = 1; zoom <= 20; zoom++) {
+            PatternPath current = path.forZoom(zoom);
+            // a more detailed path keeps every point of a less detailed one
+            assertTrue(current.size() >= previous.size());
+            keptIndexes(current, previous);
+            previous = current;
+        }
+        assertTrue(path.forZoom(10).size() < path.forZoom(14).size());
+        assertSame(path, path.forZoom(20));
+        assertSame(path.forZoom(12), path.forZoom(12));
+    }
+
+    @Test
+    void testShortPathsUnchanged() {
+        List<LatLon> points = new ArrayList<>();
+        points.add(new LatLon(49.2, -123.2));
+        points.add(new LatLon(49.3, -123.1));
+        PatternPath twoPoints = PatternPath.fromLatLons(points);
+        assertSame(twoPoints, twoPoints.simplify(1.0));
+        assertSame(PatternPath.EMPTY, PatternPath.EMPTY.simplify(1.0));
+        assertSame(PatternPath.EMPTY, PatternPath.EMPTY.forZoom(0));
+    }
+
+    @Test
+    void testStraightLineReducedToEndpoints() {
+        double[] coords = new double[2 * 100];
+        for (int i = 0; i < 100; i++) {
+            coords[2 * i] = 49.0 + i * 0.001;
+            coords[2 * i + 1] = -123.0;
+        }
+        PatternPath simplified = new PatternPath(coords).simplify(1e-6);
+        assertEquals(2, simplified.size());
+    }
+
+    /**
+     * Find the index in full of each point of simplified, failing if simplified has a point not in full or
+     * has its points in a different order
+     */
+    private static int[] keptIndexes(PatternPath full, PatternPath simplified) {
+        int[] kept = new int[simplified.size()];
+        int i = 0;
+        for (int k = 0; k < simplified.size(); k++) {
+            while (i < full.size() && !full.getPoint(i).equals(simplified.getPoint(k))) {
+                i++;
+            }
+            assertTrue(i < full.size(), "point " + k + " of simplified path is not on the full path");
+            kept[k] = i++;
+        }
+        return kept;
+    }
+
+    /**
+     * Distance of point i from the segment joining points first and last, as measured by simplify
+     */
+    private static double distanceToSegment(PatternPath p, int i, int first, int last, double latScale) {
+        double x1 = p.getLongitude(first);
+        double y1 = p.getLatitude(first) * latScale;
+        double dx = p.getLongitude(last) - x1;
+        double dy = p.getLatitude(last) * latScale - y1;
+        double px = p.getLongitude(i) - x1;
+        double py = p.getLatitude(i) * latScale - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+        return Math.hypot(px - t * dx, py - t * dy);
+    }
+}
@@ -0,0 +1,150 @@
+package ca.ubc.cs.cpsc210.translink.tests.model;
+
+import ca.ubc.cs.cpsc210.translink.model.PathSource;
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+/**
+ * Test setting, loading and releasing the path of a RoutePattern
+ */
+class RoutePatternTest {
+    private static final int NUM_DRAWERS = 3;
+    private static final PatternPath LOADED = new PatternPath(new double[]{49.1, -123.1, 49.2, -123.2});
+    private static final PatternPath SET = new PatternPath(new double[]{49.3, -123.3, 49.4, -123.4});
+
+    private RoutePattern pattern;
+    private CountingSource source;
+
+    @BeforeEach
+    void setup() {
+        pattern = new RoutePattern("EB1", "DOWNTOWN", "EAST", new Route("003"));
+        source = new CountingSource();
+    }
+
+    @Test
+    void testNewPatternHasEmptyPath() {
+        assertSame(PatternPath.EMPTY, pattern.getPatternPath());
+        assertEquals(0, pattern.getPath().size());
+    }
+
+    @Test
+    void testLoadedOnceUntilReleased() {
+        pattern.setPathSource(source);
+        assertSame(LOADED, pattern.getPatternPath());
+        assertSame(LOADED, pattern.getPatternPath());
+        assertEquals(1, source.loads.get());
+
+        pattern.releasePath();
+        assertSame(LOADED, pattern.getPatternPath());
+        assertEquals(2, source.loads.get());
+    }
+
+    @Test
+    void testReadPathDoesNotKeepPath() {
+        pattern.setPathSource(source);
+        assertSame(LOADED, pattern.readPath());
+        assertSame(LOADED, pattern.readPath());
+        assertEquals(2, source.loads.get());
+    }
+
+    @Test
+    void testReleaseKeepsPathSetDirectly() {
+        pattern.setPath(SET);
+        pattern.releasePath();
+        assertSame(SET, pattern.getPatternPath());
+
+        pattern.setPathSource(source);
+        pattern.setPath(SET);
+        pattern.releasePath();
+        assertSame(SET, pattern.getPatternPath());
+        assertEquals(0, source.loads.get());
+    }
+
+    @Test
+    void testPathSetWhileLoadingIsKept() {
+        // the path is set directly, as by another thread, while it is being loaded from its source
+        pattern.setPathSource(new PathSource() {
+            @Override
+            public PatternPath loadPath() {
+                pattern.setPath(SET);
+                return LOADED;
+            }
+        });
+        assertSame(LOADED, pattern.getPatternPath());
+        assertSame(SET, pattern.getPatternPath());
+        pattern.releasePath();
+        assertSame(SET, pattern.getPatternPath());
+    }
+
+    @Test
+    void testConcurrentSetReleaseAndGet() throws InterruptedException {
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // a loader thread keeps setting the path and its source while drawing threads use and release it
+        Thread setter = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 200000 && failure.get() == null; i++) {
+                    if (i % 2 == 0) {
+                        pattern.setPath(SET);
+                    } else {
+                        pattern.setPathSource(source);
+                    }
+                }
+                done.set(true);
+            }
+        };
+        Thread[] drawers = new Thread[NUM_DRAWERS];
+        for (int t = 0; t < NUM_DRAWERS; t++) {
+            drawers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!done.get()) {
+                            pattern.releasePath();
+                            assertNotNull(pattern.getPatternPath());
+                            assertNotNull(pattern.readPath());
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+            drawers[t].start();
+        }
+        setter.start();
+        setter.join();
+        for (Thread drawer : drawers) {
+            drawer.join();
+        }
+
+        assertNull(failure.get());
+    }
+
+    /**
+     * Path source that counts how many times it is loaded from
+     */
+    private static class CountingSource implements PathSource {
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public PatternPath loadPath() {
+            loads.incrementAndGet();
+            return LOADED;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ca.ubc.cs.cpsc210.translink.tests.model;
+
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test linking routes and stops, including from several threads at once
+ */
+class RouteTest {
+    private static final int NUM_STOPS = 2000;
+
+    private Route route;
+    private Stop[] stops;
+
+    @BeforeEach
+    void setup() {
+        route = new Route("099");
+        stops = new Stop[NUM_STOPS];
+        for (int i = 0; i < NUM_STOPS; i++) {
+            stops[i] = new Stop(50000 + i, "Stop " + i, new LatLon(49.2, -123.1));
+        }
+    }
+
+    @Test
+    void testLinkedBothWays() {
+        route.addStop(stops[0]);
+        stops[1].addRoute(route);
+
+        assertTrue(route.hasStop(stops[0]));
+        assertTrue(route.hasStop(stops[1]));
+        assertTrue(stops[0].onRoute(route));
+        assertTrue(stops[1].onRoute(route));
+
+        stops[0].removeRoute(route);
+        route.removeStop(stops[1]);
+        assertTrue(route.getStops().isEmpty());
+        assertFalse(stops[0].onRoute(route));
+        assertFalse(stops[1].onRoute(route));
+    }
+
+    @Test
+    void testSnapshotsNotChangedByLaterAdds() {
+        route.addStop(stops[0]);
+        List<Stop> before = route.getStops();
+        List<RoutePattern> patternsBefore = route.getPatterns();
+        route.addStop(stops[1]);
+        route.getPattern("EB1");
+
+        assertEquals(1, before.size());
+        assertTrue(patternsBefore.isEmpty());
+        assertEquals(2, route.getStops().size());
+        assertEquals(1, route.getPatterns().size());
+        try {
+            route.getPatterns().clear();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    void testConcurrentLinkingWhileReading() throws Throwable {
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // one thread links stops from the route side and another from the stop side, as the stop parser and
+        // the snapshot reader do, while a reader iterates what has been linked so far
+        Thread fromRoute = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < NUM_STOPS; i++) {
+                    route.addStop(stops[i]);
+                    route.getPattern("P" + (i % 50));
+                }
+            }
+        };
+        Thread fromStop = new Thread() {
+            @Override
+            public void run() {
+                for (int i = NUM_STOPS - 1; i >= 0; i--) {
+                    stops[i].addRoute(route);
+                }
+            }
+        };
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (!done.get()) {
+                        for (Stop stop : route.getStops()) {
+                            stop.getRoutes();
+                        }
+                        for (RoutePattern pattern : route.getPatterns()) {
+                            pattern.getName();
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        };
+        reader.start();
+        fromRoute.start();
+        fromStop.start();
+        fromRoute.join();
+        fromStop.join();
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(NUM_STOPS, route.getStops().size());
+        assertEquals(50, route.getPatterns().size());
+        for (Stop stop : stops) {
+            assertEquals(1, stop.getRoutes().size());
+            assertSame(route, stop.getRoutes().iterator().next());
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package ca.ubc.cs.cpsc210.translink.tests.model;
+
+import ca.ubc.cs.cpsc210.translink.model.ClusterVisitor;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopCluster;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test the StopManager, and the table in which it holds its stops
+ */
+class StopManagerTest {
+    // enough stops for the table to grow many times from its initial capacity
+    private static final int NUM_STOPS = 20000;
+    private static final int NUM_THREADS = 4;
+
+    private StopManager stopManager;
+
+    @BeforeEach
+    void setup() {
+        stopManager = new TransitNetwork().getStopManager();
+    }
+
+    @Test
+    void testBasic() {
+        Stop s9999 = new Stop(9999, "My house", new LatLon(-49.2, 123.2));
+        Stop r = stopManager.getStopWithNumber(9999);
+        assertEquals(s9999, r);
+    }
+
+    @Test
+    void testLookupsThroughResizes() {
+        Stop first = stopManager.getStopWithNumber(50000, "First", locationOf(0));
+        for (int i = 1; i < NUM_STOPS; i++) {
+            Stop added = stopManager.getStopWithNumber(50000 + i, "Stop " + i, locationOf(i));
+            assertSame(added, stopManager.getStopWithNumber(50000 + i));
+            assertSame(first, stopManager.getStopWithNumber(50000));
+        }
+
+        assertEquals(NUM_STOPS, stopManager.getNumStops());
+        for (int i = 0; i < NUM_STOPS; i++) {
+            assertTrue(stopManager.hasStopWithNumber(50000 + i));
+        }
+        assertFalse(stopManager.hasStopWithNumber(50000 + NUM_STOPS));
+        assertFalse(stopManager.hasStopWithNumber(49999));
+    }
+
+    @Test
+    void testIteratorSeesEachStopOnce() {
+        for (int i = 0; i < NUM_STOPS; i++) {
+            stopManager.getStopWithNumber(i * 7, "Stop " + i, locationOf(i));
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        for (Stop s : stopManager) {
+            assertTrue(seen.add(s.getNumber()));
+        }
+        assertEquals(NUM_STOPS, seen.size());
+    }
+
+    @Test
+    void testConcurrentInsertsThroughResizes() throws InterruptedException {
+        final AtomicInteger lookupFailures = new AtomicInteger();
+        Thread[] writers = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final int offset = t;
+            writers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < NUM_STOPS; i += NUM_THREADS) {
+                        Stop added = stopManager.getStopWithNumber(i, "Stop " + i, locationOf(i));
+                        if (stopManager.getStopWithNumber(i) != added) {
+                            lookupFailures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(0, lookupFailures.get());
+        assertEquals(NUM_STOPS, stopManager.getNumStops());
+        for (int i = 0; i < NUM_STOPS; i++) {
+            assertEquals("Stop " + i, stopManager.getStopWithNumber(i).getName());
+        }
+    }
+
+    @Test
+    void testPlaceholdersRacingNamedStops() throws InterruptedException {
+        // one thread makes placeholders, as route parsing does for stop numbers it has not seen, while another
+        // adds the same stops with their names and locations
+        Thread placeholders = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < NUM_STOPS; i++) {
+                    stopManager.getStopWithNumber(i);
+                }
+            }
+        };
+        Thread named = new Thread() {
+            @Override
+            public void run() {
+                for (int i = NUM_STOPS - 1; i >= 0; i--) {
+                    stopManager.getStopWithNumber(i, "Stop " + i, locationOf(i));
+                }
+            }
+        };
+        placeholders.start();
+        named.start();
+        placeholders.join();
+        named.join();
+
+        assertEquals(NUM_STOPS, stopManager.getNumStops());
+        for (int i = 0; i < NUM_STOPS; i++) {
+            Stop s = stopManager.getStopWithNumber(i);
+            assertEquals("Stop " + i, s.getName());
+            assertEquals(locationOf(i), s.getLocn());
+        }
+    }
+
+    @Test
+    void testClustersComputedOnFirstUse() {
+        stopManager.getStopWithNumber(1, "Stop", locationOf(1));
+        assertEquals(1, countClustered(0));
+    }
+
+    @Test
+    void testClustersRebuiltInBackgroundAfterChange() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            stopManager.getStopWithNumber(i, "Stop " + i, locationOf(i));
+        }
+        stopManager.prepareClusters();
+        assertEquals(100, countClustered(0));
+
+        stopManager.getStopWithNumber(100, "Stop 100", locationOf(100));
+        // the clusters from before the change are used until the rebuild is done
+        long deadline = System.currentTimeMillis() + 10000;
+        int clustered = countClustered(0);
+        while (clustered != 101 && System.currentTimeMillis() < deadline) {
+            assertEquals(100, clustered);
+            Thread.sleep(10);
+            clustered = countClustered(0);
+        }
+        assertEquals(101, clustered);
+
+        stopManager.getStopWithNumber(101, "Stop 101", locationOf(101));
+        stopManager.prepareClusters();
+        assertEquals(102, countClustered(0));
+    }
+
+    @Test
+    void testClearThenReuse() {
+        for (int i = 0; i < NUM_STOPS; i++) {
+            stopManager.getStopWithNumber(i, "Stop " + i, locationOf(i));
+        }
+        stopManager.clearStops();
+        assertEquals(0, stopManager.getNumStops());
+        assertFalse(stopManager.hasStopWithNumber(0));
+
+        stopManager.getStopWithNumber(42, "Again", locationOf(42));
+        assertEquals(1, stopManager.getNumStops());
+        assertEquals("Again", stopManager.getStopWithNumber(42).getName());
+    }
+
+    @Test
+    void testIteratorRemoveUnsupported() {
+        stopManager.getStopWithNumber(1, "Stop", locationOf(1));
+        Iterator<Stop> it = stopManager.iterator();
+        it.next();
+        try {
+            it.remove();
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, stopManager.getNumStops());
+    }
+
+    /**
+     * Count the stops in all clusters at the given zoom level
+     */
+    private int countClustered(int zoomLevel) {
+        final AtomicInteger count = new AtomicInteger();
+        stopManager.clustersInRectangle(new LatLon(85.0, -180.0), new LatLon(-85.0, 180.0), zoomLevel,
+                new ClusterVisitor() {
+                    @Override
+                    public void visit(StopCluster cluster) {
+                        count.addAndGet(cluster.getCount());
+                    }
+                });
+        return count.get();
+    }
+
+    private static LatLon locationOf(int i) {
+        return new LatLon(49.0 + (i % 1000) * 0.0001, -123.0 - (i / 1000) * 0.0001);
+    }
+}
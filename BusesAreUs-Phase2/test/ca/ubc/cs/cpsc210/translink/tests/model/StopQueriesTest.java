@@ -0,0 +1,212 @@
+package ca.ubc.cs.cpsc210.translink.tests.model;
+
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.StopVisitor;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test the spatial queries of the StopManager against checks of every stop
+ */
+class StopQueriesTest {
+    private static final int NUM_STOPS = 1500;
+    private static final int NUM_QUERIES = 200;
+
+    private Random random;
+    private StopManager stopManager;
+    private List<Stop> stops;
+
+    @BeforeEach
+    void setup() {
+        random = new Random(210);
+        stopManager = new TransitNetwork().getStopManager();
+        stops = new ArrayList<>();
+        for (int i = 0; i < NUM_STOPS; i++) {
+            stops.add(stopManager.getStopWithNumber(50000 + i, "Stop " + i, randomLocation()));
+        }
+    }
+
+    @Test
+    void testFindKNearestMatchesBruteForce() {
+        int[] ks = {1, 2, 5, 20, 100};
+        double[] radii = {50, 400, 1500, 5000, 60000};
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            LatLon pt = randomLocation();
+            int k = ks[i % ks.length];
+            double radius = radii[(i / ks.length) % radii.length];
+            assertEquals(bruteForce(pt, k, radius), stopManager.findKNearest(pt, k, radius));
+        }
+    }
+
+    @Test
+    void testFindWithinMatchesBruteForce() {
+        // radii from inside one cell to across many cells
+        double[] radii = {100, 800, 1500, 3000};
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            LatLon pt = randomLocation();
+            double radius = radii[i % radii.length];
+            assertEquals(bruteForce(pt, Integer.MAX_VALUE, radius), stopManager.findWithin(pt, radius));
+        }
+    }
+
+    @Test
+    void testKLargerThanNumberOfStops() {
+        LatLon pt = randomLocation();
+        List<Stop> found = stopManager.findKNearest(pt, NUM_STOPS * 2, Double.MAX_VALUE);
+        assertEquals(NUM_STOPS, found.size());
+        assertEquals(bruteForce(pt, NUM_STOPS, Double.MAX_VALUE), found);
+    }
+
+    @Test
+    void testKZero() {
+        assertTrue(stopManager.findKNearest(randomLocation(), 0, Double.MAX_VALUE).isEmpty());
+        assertTrue(stopManager.findKNearest(randomLocation(), -1, Double.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void testNoStops() {
+        StopManager empty = new TransitNetwork().getStopManager();
+        LatLon pt = randomLocation();
+        assertTrue(empty.findKNearest(pt, 5, Double.MAX_VALUE).isEmpty());
+        assertTrue(empty.findWithin(pt, 10000).isEmpty());
+    }
+
+    @Test
+    void testQueryFarFromEveryStop() {
+        LatLon pt = new LatLon(-33.87, 151.21);
+        assertTrue(stopManager.findWithin(pt, 10000).isEmpty());
+        assertEquals(bruteForce(pt, 3, Double.MAX_VALUE), stopManager.findKNearest(pt, 3, Double.MAX_VALUE));
+    }
+
+    @Test
+    void testStopsInRectangleMatchesBruteForce() {
+        for (int i = 0; i < NUM_QUERIES; i++) {
+            LatLon corner = randomLocation();
+            // from a few metres to wider than all of the stops
+            double size = (i % 2 == 0 ? 0.001 : 0.05) * random.nextDouble() + (i % 10 == 0 ? 0.5 : 0);
+            LatLon southEast = new LatLon(corner.getLatitude() - size, corner.getLongitude() + size * 1.5);
+            assertRectangle(bruteForce(corner, southEast), corner, southEast);
+        }
+    }
+
+    @Test
+    void testStopsInDegenerateRectangle() {
+        // a single point, on a stop
+        Stop s = stops.get(17);
+        Set<Stop> expected = bruteForce(s.getLocn(), s.getLocn());
+        assertTrue(expected.contains(s));
+        assertRectangle(expected, s.getLocn(), s.getLocn());
+
+        // a line of latitude through the stop, and a line of longitude through it
+        LatLon west = new LatLon(s.getLatitude(), -123.3);
+        LatLon east = new LatLon(s.getLatitude(), -122.9);
+        assertTrue(bruteForce(west, east).contains(s));
+        assertRectangle(bruteForce(west, east), west, east);
+        LatLon north = new LatLon(49.4, s.getLongitude());
+        LatLon south = new LatLon(49.1, s.getLongitude());
+        assertTrue(bruteForce(north, south).contains(s));
+        assertRectangle(bruteForce(north, south), north, south);
+    }
+
+    @Test
+    void testStopsInInvertedRectangle() {
+        // corners swapped north to south, east to west, and both
+        assertRectangle(new HashSet<Stop>(), new LatLon(49.15, -123.25), new LatLon(49.35, -122.95));
+        assertRectangle(new HashSet<Stop>(), new LatLon(49.35, -122.95), new LatLon(49.15, -123.25));
+        assertRectangle(new HashSet<Stop>(), new LatLon(49.15, -122.95), new LatLon(49.35, -123.25));
+    }
+
+    @Test
+    void testStopsInRectangleOutsideStops() {
+        // entirely outside the stops, and far beyond the limits of latitude and longitude
+        assertRectangle(new HashSet<Stop>(), new LatLon(-30, 140), new LatLon(-40, 150));
+        assertRectangle(new HashSet<Stop>(), new LatLon(49.5, -123.25), new LatLon(49.4, -122.95));
+        assertRectangle(new HashSet<Stop>(stops), new LatLon(1000, -1000), new LatLon(-1000, 1000));
+        assertRectangle(new HashSet<Stop>(stops), new LatLon(90, -180), new LatLon(-90, 180));
+    }
+
+    @Test
+    void testStopsInRectangleNoStops() {
+        StopManager empty = new TransitNetwork().getStopManager();
+        assertTrue(empty.stopsInRectangle(new LatLon(90, -180), new LatLon(-90, 180)).isEmpty());
+    }
+
+    /**
+     * Check that both forms of stopsInRectangle find exactly the expected stops, each once
+     */
+    private void assertRectangle(Set<Stop> expected, LatLon northWest, LatLon southEast) {
+        List<Stop> listed = stopManager.stopsInRectangle(northWest, southEast);
+        assertEquals(expected.size(), listed.size());
+        assertEquals(expected, new HashSet<>(listed));
+
+        final Set<Stop> visited = new HashSet<>();
+        stopManager.stopsInRectangle(northWest, southEast, new StopVisitor() {
+            @Override
+            public void visit(Stop stop) {
+                assertFalse(visited.contains(stop), "stop visited twice");
+                visited.add(stop);
+            }
+        });
+        assertEquals(expected, visited);
+    }
+
+    /**
+     * The stops in the rectangle, found by checking every stop
+     */
+    private Set<Stop> bruteForce(LatLon northWest, LatLon southEast) {
+        Set<Stop> inside = new HashSet<>();
+        for (Stop s : stops) {
+            if (Geometry.rectangleContainsPoint(northWest, southEast, s.getLocn())) {
+                inside.add(s);
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Random location in and around Vancouver
+     */
+    private LatLon randomLocation() {
+        return new LatLon(49.15 + random.nextDouble() * 0.2, -123.25 + random.nextDouble() * 0.3);
+    }
+
+    /**
+     * The k nearest stops to pt that are less than maxMetres away, found by measuring the distance to every
+     * stop, nearest first and equally distant stops by number
+     */
+    private List<Stop> bruteForce(final LatLon pt, int k, double maxMetres) {
+        List<Stop> within = new ArrayList<>();
+        for (Stop s : stops) {
+            if (SphericalGeometry.distanceBetween(s.getLocn(), pt) < maxMetres) {
+                within.add(s);
+            }
+        }
+        Collections.sort(within, new Comparator<Stop>() {
+            @Override
+            public int compare(Stop s1, Stop s2) {
+                int result = Double.compare(SphericalGeometry.distanceBetween(s1.getLocn(), pt),
+                        SphericalGeometry.distanceBetween(s2.getLocn(), pt));
+                return result != 0 ? result : Integer.compare(s1.getNumber(), s2.getNumber());
+            }
+        });
+        return within.subList(0, Math.min(k, within.size()));
+    }
+}
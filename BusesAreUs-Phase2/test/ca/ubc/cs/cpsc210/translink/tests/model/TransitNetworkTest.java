@@ -0,0 +1,112 @@
+package ca.ubc.cs.cpsc210.translink.tests.model;
+
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test publishing a TransitNetwork
+ */
+class TransitNetworkTest {
+
+    @BeforeEach
+    void setup() {
+        TransitNetwork.publish(new TransitNetwork());
+    }
+
+    @AfterEach
+    void teardown() {
+        TransitNetwork.publish(new TransitNetwork());
+    }
+
+    @Test
+    void testPublishReplacesCurrent() {
+        TransitNetwork old = TransitNetwork.current();
+        TransitNetwork network = networkWithStops(50001, 50002);
+
+        assertSame(old, TransitNetwork.publish(network));
+        assertSame(network, TransitNetwork.current());
+        assertSame(network.getStopManager(), StopManager.getInstance());
+        assertSame(network.getRouteManager(), RouteManager.getInstance());
+        assertTrue(old.isEmpty());
+    }
+
+    @Test
+    void testSelectionCarriedOver() throws StopException {
+        TransitNetwork first = networkWithStops(50001, 50002);
+        TransitNetwork.publish(first);
+        first.getStopManager().setSelected(first.getStopManager().getStopWithNumber(50002));
+
+        TransitNetwork second = networkWithStops(50001, 50002, 50003);
+        TransitNetwork.publish(second);
+
+        Stop selected = StopManager.getInstance().getSelected();
+        assertEquals(50002, selected.getNumber());
+        // the selected stop is the new network's own stop, not the old network's
+        assertSame(second.getStopManager().getStopWithNumber(50002), selected);
+        assertNotSame(first.getStopManager().getStopWithNumber(50002), selected);
+    }
+
+    @Test
+    void testSelectionNotCarriedOverWhenStopMissing() throws StopException {
+        TransitNetwork first = networkWithStops(50001, 50002);
+        TransitNetwork.publish(first);
+        first.getStopManager().setSelected(first.getStopManager().getStopWithNumber(50002));
+
+        TransitNetwork.publish(networkWithStops(50001));
+
+        assertNull(StopManager.getInstance().getSelected());
+    }
+
+    @Test
+    void testSelectionNeverMissingDuringPublish() throws StopException, InterruptedException {
+        TransitNetwork first = networkWithStops(50001, 50002);
+        TransitNetwork.publish(first);
+        first.getStopManager().setSelected(first.getStopManager().getStopWithNumber(50001));
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger missing = new AtomicInteger();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    if (StopManager.getInstance().getSelected() == null) {
+                        missing.incrementAndGet();
+                    }
+                }
+            }
+        };
+        reader.start();
+        for (int i = 0; i < 20000; i++) {
+            TransitNetwork.publish(networkWithStops(50001, 50002));
+        }
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, missing.get());
+    }
+
+    private static TransitNetwork networkWithStops(int... numbers) {
+        TransitNetwork network = new TransitNetwork();
+        for (int number : numbers) {
+            network.getStopManager().getStopWithNumber(number, "Stop " + number, new LatLon(49.2, -123.1));
+        }
+        return network;
+    }
+}
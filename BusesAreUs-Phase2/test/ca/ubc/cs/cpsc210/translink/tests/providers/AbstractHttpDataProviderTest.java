@@ -0,0 +1,197 @@
+package ca.ubc.cs.cpsc210.translink.tests.providers;
+
+import ca.ubc.cs.cpsc210.translink.providers.AbstractHttpDataProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test that concurrent requests for the same URL share one fetch
+ */
+class AbstractHttpDataProviderTest {
+    private static final int NUM_CALLERS = 6;
+
+    private FakeServer server;
+
+    @BeforeEach
+    void setup() {
+        server = new FakeServer();
+    }
+
+    @Test
+    void testSingleRequest() throws IOException {
+        server.release.countDown();
+        assertEquals("{\"n\":1}", new FakeProvider("single").dataSourceToString());
+        assertEquals(1, server.fetches.get());
+    }
+
+    @Test
+    void testConcurrentRequestsShareOneFetch() throws Exception {
+        List<String> results = callConcurrently("shared");
+        assertEquals(1, server.fetches.get());
+        assertEquals(Collections.nCopies(NUM_CALLERS, "{\"n\":1}"), results);
+
+        // the finished request is no longer shared, so the next one fetches again
+        assertEquals("{\"n\":2}", new FakeProvider("shared").dataSourceToString());
+        assertEquals(2, server.fetches.get());
+    }
+
+    @Test
+    void testDifferentUrlsNotShared() throws IOException {
+        server.release.countDown();
+        new FakeProvider("first").dataSourceToString();
+        new FakeProvider("second").dataSourceToString();
+        assertEquals(2, server.fetches.get());
+    }
+
+    @Test
+    void testFailureReachesEveryCaller() throws Exception {
+        server.failing = true;
+        List<String> results = callConcurrently("failing");
+        assertEquals(1, server.fetches.get());
+        assertEquals(Collections.nCopies(NUM_CALLERS, "Error"), results);
+
+        // the failed request is not kept, so the next one fetches again and can succeed
+        server.failing = false;
+        assertEquals("{\"n\":2}", new FakeProvider("failing").dataSourceToString());
+        assertEquals(2, server.fetches.get());
+    }
+
+    /**
+     * Request path from NUM_CALLERS threads at once, letting the fetch finish only once every caller is
+     * either fetching or waiting for the fetch
+     *
+     * @return the result of each caller
+     */
+    private List<String> callConcurrently(final String path) throws Exception {
+        final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+        Thread[] callers = new Thread[NUM_CALLERS];
+        for (int i = 0; i < NUM_CALLERS; i++) {
+            callers[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(new FakeProvider(path).dataSourceToString());
+                    } catch (IOException e) {
+                        results.add(e.toString());
+                    }
+                }
+            };
+            callers[i].start();
+        }
+
+        assertTrue(server.fetching.await(10, TimeUnit.SECONDS), "no fetch started");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!allWaiting(callers) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(allWaiting(callers), "callers did not all wait");
+        server.release.countDown();
+
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        return results;
+    }
+
+    private static boolean allWaiting(Thread[] threads) {
+        for (Thread t : threads) {
+            if (t.getState() != Thread.State.WAITING && t.getState() != Thread.State.TIMED_WAITING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Provider reading from the fake server
+     */
+    private class FakeProvider extends AbstractHttpDataProvider {
+        private final String path;
+
+        FakeProvider(String path) {
+            this.path = path;
+        }
+
+        @Override
+        protected URL getUrl() throws MalformedURLException {
+            return new URL(null, "http://fake/" + path, server);
+        }
+
+        @Override
+        public byte[] dataSourceToBytes() throws IOException {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Answers every connection without a network, counting fetches.  Each fetch waits in connect until
+     * release is counted down, and then answers with the number of the fetch, or with an error if failing.
+     */
+    private static class FakeServer extends URLStreamHandler {
+        private final AtomicInteger fetches = new AtomicInteger();
+        private final CountDownLatch fetching = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean failing;
+
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new HttpURLConnection(url) {
+                private int fetch;
+
+                @Override
+                public void connect() throws IOException {
+                    fetch = fetches.incrementAndGet();
+                    fetching.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+
+                @Override
+                public int getResponseCode() {
+                    return failing ? HTTP_INTERNAL_ERROR : HTTP_OK;
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(("{\"n\":" + fetch + "}").getBytes());
+                }
+
+                @Override
+                public InputStream getErrorStream() {
+                    return new ByteArrayInputStream("Server error".getBytes());
+                }
+
+                @Override
+                public void disconnect() {
+                }
+
+                @Override
+                public boolean usingProxy() {
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ca.ubc.cs.cpsc210.translink.tests.providers;
+
+import ca.ubc.cs.cpsc210.translink.providers.AbstractFileDataProvider;
+import ca.ubc.cs.cpsc210.translink.providers.ChannelFileDataProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Test reading whole data sources into memory, from a file and from streams of unknown length
+ */
+class ChannelFileDataProviderTest {
+    // the smallest buffer readSourceBuffer starts with
+    private static final int INITIAL_BUFFER = 8192;
+
+    private File file;
+    private Random random;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = File.createTempFile("provider", ".json");
+        random = new Random(210);
+    }
+
+    @AfterEach
+    void teardown() {
+        file.delete();
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        ChannelFileDataProvider provider = new ChannelFileDataProvider(file);
+        assertEquals(0, provider.dataSourceToBytes().length);
+        assertEquals("", provider.dataSourceToString());
+        assertEquals(0, provider.dataSourceToByteBuffer().remaining());
+    }
+
+    @Test
+    void testFileLargerThanInitialBuffer() throws IOException {
+        byte[] contents = randomBytes(3 * INITIAL_BUFFER + 17);
+        write(contents);
+        ChannelFileDataProvider provider = new ChannelFileDataProvider(file);
+
+        assertArrayEquals(contents, provider.dataSourceToBytes());
+        assertArrayEquals(contents, remaining(provider.dataSourceToByteBuffer()));
+    }
+
+    @Test
+    void testString() throws IOException {
+        String contents = "[{\"Name\":\"Oak St \u00e9\"}]";
+        write(contents.getBytes("UTF-8"));
+        assertEquals(contents, new ChannelFileDataProvider(file).dataSourceToString());
+    }
+
+    @Test
+    void testReadEmptyStream() throws IOException {
+        assertEquals(0, Reader.read(new TricklingStream(new byte[0], 0)).remaining());
+    }
+
+    @Test
+    void testReadGrowsWhenEstimateTooSmall() throws IOException {
+        // no estimate of the length, and a source several times the initial buffer read a little at a time
+        byte[] contents = randomBytes(5 * INITIAL_BUFFER + 3);
+        ByteBuffer buffer = Reader.read(new TricklingStream(contents, 0));
+        assertArrayEquals(contents, remaining(buffer));
+    }
+
+    @Test
+    void testReadExactlyFillingBuffer() throws IOException {
+        // the buffer fills exactly, so one more byte is read to find the end before growing it
+        byte[] contents = randomBytes(INITIAL_BUFFER);
+        ByteBuffer buffer = Reader.read(new TricklingStream(contents, 0));
+        assertArrayEquals(contents, remaining(buffer));
+        assertEquals(INITIAL_BUFFER, buffer.array().length);
+
+        contents = randomBytes(INITIAL_BUFFER + 1);
+        assertArrayEquals(contents, remaining(Reader.read(new TricklingStream(contents, 0))));
+    }
+
+    @Test
+    void testReadWithExactEstimate() throws IOException {
+        byte[] contents = randomBytes(2 * INITIAL_BUFFER + 100);
+        ByteBuffer buffer = Reader.read(new TricklingStream(contents, contents.length));
+        assertArrayEquals(contents, remaining(buffer));
+        assertEquals(contents.length, buffer.array().length);
+    }
+
+    @Test
+    void testReadClosesStream() throws IOException {
+        TricklingStream stream = new TricklingStream(randomBytes(10), 10);
+        Reader.read(stream);
+        assertTrue(stream.closed);
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private void write(byte[] contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Gives the tests access to the stream reading shared by file data providers
+     */
+    private abstract static class Reader extends AbstractFileDataProvider {
+        static ByteBuffer read(InputStream is) throws IOException {
+            return readSourceBuffer(is);
+        }
+    }
+
+    /**
+     * Stream that estimates its length as told and reads at most a few hundred bytes at a time, as a
+     * stream from a compressed resource can
+     */
+    private static class TricklingStream extends ByteArrayInputStream {
+        private static final int MAX_READ = 300;
+        private final int estimate;
+        private boolean closed;
+
+        TricklingStream(byte[] contents, int estimate) {
+            super(contents);
+            this.estimate = estimate;
+        }
+
+        @Override
+        public synchronized int available() {
+            return Math.min(estimate, super.available());
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, MAX_READ));
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+}
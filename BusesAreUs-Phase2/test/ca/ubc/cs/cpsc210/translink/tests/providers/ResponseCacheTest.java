@@ -0,0 +1,157 @@
+package ca.ubc.cs.cpsc210.translink.tests.providers;
+
+import ca.ubc.cs.cpsc210.translink.providers.ResponseCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test expiry, eviction and counting of hits and misses in the ResponseCache
+ */
+class ResponseCacheTest {
+    private static final long TIME_TO_LIVE = 30000;
+    private static final int MAX_ENTRIES = 3;
+    // room for three responses of 10 chars, at two bytes per char
+    private static final long MAX_BYTES = 60;
+
+    private FakeClock clock;
+    private ResponseCache cache;
+
+    @BeforeEach
+    void setup() {
+        clock = new FakeClock();
+        cache = new ResponseCache(TIME_TO_LIVE, MAX_ENTRIES, MAX_BYTES, clock);
+    }
+
+    @Test
+    void testInvalidSettings() {
+        try {
+            new ResponseCache(0, MAX_ENTRIES, MAX_BYTES, clock);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new ResponseCache(TIME_TO_LIVE, 0, MAX_BYTES);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    void testExpiresAfterTimeToLive() {
+        cache.put(1, "0123456789");
+        clock.time += TIME_TO_LIVE - 1;
+        assertEquals("0123456789", cache.get(1));
+
+        clock.time += 1;
+        assertNull(cache.get(1));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    void testReplacingRestartsTimeToLive() {
+        cache.put(1, "old");
+        clock.time += TIME_TO_LIVE - 1;
+        cache.put(1, "new");
+        clock.time += TIME_TO_LIVE - 1;
+        assertEquals("new", cache.get(1));
+        assertEquals(1, cache.size());
+        assertEquals(6, cache.getBytes());
+    }
+
+    @Test
+    void testEntryLimitEvictsLeastRecentlyUsed() {
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        // using 1 makes 2 the least recently used
+        cache.get(1);
+        cache.put(4, "d");
+
+        assertEquals(MAX_ENTRIES, cache.size());
+        assertEquals("a", cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals("c", cache.get(3));
+        assertEquals("d", cache.get(4));
+    }
+
+    @Test
+    void testByteLimitEvictsLeastRecentlyUsed() {
+        cache.put(1, "0123456789");
+        cache.put(2, "0123456789");
+        // 60 bytes fill the cache on their own, so both earlier responses must go
+        cache.put(3, "012345678901234567890123456789");
+
+        assertEquals(1, cache.size());
+        assertEquals(60, cache.getBytes());
+        assertNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals("012345678901234567890123456789", cache.get(3));
+
+        // 40 bytes more only push out the least recently used response
+        cache.clear();
+        cache.put(1, "0123456789");
+        cache.put(2, "0123456789");
+        cache.get(1);
+        cache.put(3, "01234567890123456789");
+        assertEquals(60, cache.getBytes());
+        assertNull(cache.get(2));
+        assertEquals("0123456789", cache.get(1));
+    }
+
+    @Test
+    void testResponseLargerThanCacheNotCached() {
+        cache.put(1, "0123456789");
+        cache.put(2, "0123456789012345678901234567890");
+
+        assertNull(cache.get(2));
+        assertEquals("0123456789", cache.get(1));
+        assertEquals(20, cache.getBytes());
+    }
+
+    @Test
+    void testHitsAndMisses() {
+        assertNull(cache.get(1));
+        cache.put(1, "a");
+        cache.get(1);
+        cache.get(1);
+        clock.time += TIME_TO_LIVE;
+        cache.get(1);
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void testInvalidateAndClear() {
+        cache.put(1, "a");
+        cache.put(2, "bb");
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        assertEquals(4, cache.getBytes());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+        assertNull(cache.get(2));
+    }
+
+    /**
+     * Clock that only moves when told to
+     */
+    private static class FakeClock implements ResponseCache.Clock {
+        private long time = 1000;
+
+        @Override
+        public long now() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ca.ubc.cs.cpsc210.translink.tests.snapshot;
+
+import ca.ubc.cs.cpsc210.translink.model.PatternPath;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.TransitNetwork;
+import ca.ubc.cs.cpsc210.translink.snapshot.SnapshotReader;
+import ca.ubc.cs.cpsc210.translink.snapshot.SnapshotWriter;
+import ca.ubc.cs.cpsc210.translink.snapshot.exception.SnapshotFormatException;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+
+/**
+ * Test writing a transit network to a snapshot and reading it back
+ */
+class SnapshotTest {
+    private static final long STAMP = 1234567890L;
+
+    private File file;
+    private TransitNetwork network;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = File.createTempFile("snapshot", ".bin");
+        network = new TransitNetwork();
+
+        Stop s1 = network.getStopManager().getStopWithNumber(50001, "Main St", new LatLon(49.262, -123.101));
+        Stop s2 = network.getStopManager().getStopWithNumber(50002, "Cambie St", new LatLon(49.2610001234, -123.115));
+        Stop s3 = network.getStopManager().getStopWithNumber(50003, "Oak St \u00e9", new LatLon(49.25, -123.127));
+
+        Route r3 = network.getRouteManager().getRouteWithNumber("003", "MAIN");
+        s1.addRoute(r3);
+        s3.addRoute(r3);
+        s2.addRoute(r3);
+        RoutePattern p = r3.getPattern("EB1", "DOWNTOWN", "EAST");
+        p.setPath(new PatternPath(new double[]{49.1, -123.1, 49.2, -123.2, 49.3000000001, -123.3}));
+        r3.getPattern("WB1", "MAIN", "WEST").setPath(PatternPath.EMPTY);
+
+        Route r99 = network.getRouteManager().getRouteWithNumber("099", "B-LINE");
+        s2.addRoute(r99);
+    }
+
+    @AfterEach
+    void teardown() {
+        file.delete();
+    }
+
+    @Test
+    void testRoundTrip() throws IOException, SnapshotFormatException {
+        new SnapshotWriter(file, network).write(STAMP);
+        TransitNetwork loaded = read(STAMP);
+
+        assertEquals(3, loaded.getStopManager().getNumStops());
+        for (Stop expected : network.getStopManager()) {
+            Stop actual = loaded.getStopManager().getStopWithNumber(expected.getNumber());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getLocn(), actual.getLocn());
+        }
+
+        assertEquals(2, loaded.getRouteManager().getNumRoutes());
+        for (Route expected : network.getRouteManager()) {
+            Route actual = loaded.getRouteManager().getRouteWithNumber(expected.getNumber());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(stopNumbers(expected), stopNumbers(actual));
+            assertEquals(expected.getPatterns().size(), actual.getPatterns().size());
+            for (RoutePattern pattern : expected.getPatterns()) {
+                RoutePattern read = actual.getPattern(pattern.getName());
+                assertEquals(pattern.getDestination(), read.getDestination());
+                assertEquals(pattern.getDirection(), read.getDirection());
+                assertEquals(pattern.getPath(), read.getPath());
+            }
+        }
+    }
+
+    @Test
+    void testStopsWithoutLocationNotWritten() throws IOException, SnapshotFormatException {
+        // placeholder made for a stop number not in the source data
+        Stop bogus = network.getStopManager().getStopWithNumber(60000);
+        assertNull(bogus.getLocn());
+        Route r3 = network.getRouteManager().getRouteWithNumber("003");
+        r3.addStop(bogus);
+
+        new SnapshotWriter(file, network).write(STAMP);
+        TransitNetwork loaded = read(STAMP);
+
+        assertEquals(3, loaded.getStopManager().getNumStops());
+        assertFalse(loaded.getStopManager().hasStopWithNumber(60000));
+        assertEquals(3, loaded.getRouteManager().getRouteWithNumber("003").getStops().size());
+    }
+
+    @Test
+    void testWrongStamp() throws IOException {
+        new SnapshotWriter(file, network).write(STAMP);
+        assertNotReadable(STAMP + 1);
+    }
+
+    @Test
+    void testWrongVersion() throws IOException {
+        new SnapshotWriter(file, network).write(STAMP);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // the format version follows the four byte magic number
+            raf.seek(4);
+            int version = raf.readInt();
+            raf.seek(4);
+            raf.writeInt(version + 1);
+        } finally {
+            raf.close();
+        }
+        assertNotReadable(STAMP);
+    }
+
+    @Test
+    void testTruncated() throws IOException {
+        new SnapshotWriter(file, network).write(STAMP);
+        long length = file.length();
+        for (long cut = length - 1; cut > 0; cut -= 7) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(cut);
+            } finally {
+                raf.close();
+            }
+            assertNotReadable(STAMP);
+        }
+    }
+
+    @Test
+    void testNotASnapshot() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.writeBytes("N99-EB1;49.1;-123.1\n");
+        } finally {
+            raf.close();
+        }
+        assertNotReadable(STAMP);
+    }
+
+    private TransitNetwork read(long stamp) throws IOException, SnapshotFormatException {
+        TransitNetwork loaded = new TransitNetwork();
+        new SnapshotReader(file, loaded).read(stamp);
+        return loaded;
+    }
+
+    private void assertNotReadable(long stamp) throws IOException {
+        try {
+            read(stamp);
+            fail("Expected SnapshotFormatException");
+        } catch (SnapshotFormatException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    private static List<Integer> stopNumbers(Route route) {
+        List<Integer> numbers = new ArrayList<>();
+        for (Stop stop : route.getStops()) {
+            numbers.add(stop.getNumber());
+        }
+        return numbers;
+    }
+}